@@ -0,0 +1,115 @@
+package com.github.reneweb.stock;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Parses a full intraday response of 100 bars. Run with the gc profiler to compare the allocation
+ * rate of the streaming parser with binding into the previous Map of String based StockEntry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlphaVantageParseBenchmark {
+
+  private ObjectMapper objectMapper;
+  private AlphaVantageParser parser;
+  private byte[] body;
+
+  @Setup
+  public void setup() {
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    parser = new AlphaVantageParser(objectMapper);
+    body = intradayResponse(100).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public LegacyStock databindStrings() throws IOException {
+    return objectMapper.readValue(body, LegacyStock.class);
+  }
+
+  @Benchmark
+  public Stock databindSeries() throws IOException {
+    return objectMapper.readValue(body, Stock.class);
+  }
+
+  @Benchmark
+  public Stock streaming() throws IOException {
+    return parser.parse(body);
+  }
+
+  static String intradayResponse(int bars) {
+    DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    LocalDateTime time = LocalDateTime.of(2020, 5, 1, 16, 0);
+    StringBuilder json =
+        new StringBuilder(
+            "{\"Meta Data\":{\"1. Information\":\"Intraday (5min) open, high, low, close prices and"
+                + " volume\",\"2. Symbol\":\"MSFT\",\"3. Last Refreshed\":\"2020-05-01 16:00:00\","
+                + "\"4. Interval\":\"5min\",\"5. Output Size\":\"Compact\","
+                + "\"6. Time Zone\":\"US/Eastern\"},\"Time Series (5min)\":{");
+    for (int i = 0; i < bars; i++) {
+      double open = 174 + (i % 17) * 0.0731;
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append('"')
+          .append(format.format(time.minusMinutes(5L * i)))
+          .append("\":{\"1. open\":\"")
+          .append(String.format(Locale.ROOT, "%.4f", open))
+          .append("\",\"2. high\":\"")
+          .append(String.format(Locale.ROOT, "%.4f", open + 0.21))
+          .append("\",\"3. low\":\"")
+          .append(String.format(Locale.ROOT, "%.4f", open - 0.18))
+          .append("\",\"4. close\":\"")
+          .append(String.format(Locale.ROOT, "%.4f", open + 0.03))
+          .append("\",\"5. volume\":\"")
+          .append(100000 + i * 731)
+          .append("\"}");
+    }
+    return json.append("}}").toString();
+  }
+
+  /** The response model before the series was stored in primitive arrays. */
+  public static class LegacyStock {
+    @JsonProperty("Time Series (5min)")
+    public Map<String, LegacyEntry> stockHistory;
+  }
+
+  public static class LegacyEntry {
+    @JsonProperty("1. open")
+    public String open;
+
+    @JsonProperty("2. high")
+    public String high;
+
+    @JsonProperty("3. low")
+    public String low;
+
+    @JsonProperty("4. close")
+    public String close;
+
+    @JsonProperty("5. volume")
+    public String volume;
+  }
+}
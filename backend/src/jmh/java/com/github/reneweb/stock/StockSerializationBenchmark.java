@@ -0,0 +1,75 @@
+package com.github.reneweb.stock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Writes the body of GET /stocks/{symbol} for a stock of 100 bars: serialized by Jackson per
+ * request, as for projected stocks, optionally gzipped like the container's response compression,
+ * and served from the payload cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StockSerializationBenchmark {
+
+  private ObjectMapper objectMapper;
+  private StockPayloadCache stockPayloadCache;
+  private Stock stock;
+  private StockProjection projection;
+
+  @Setup
+  public void setup() throws IOException {
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    stockPayloadCache = new StockPayloadCache(objectMapper, new SimpleMeterRegistry(), 10);
+    stock =
+        new AlphaVantageParser(objectMapper)
+            .parse(
+                AlphaVantageParseBenchmark.intradayResponse(100).getBytes(StandardCharsets.UTF_8));
+    projection = StockProjection.of(null, null, 20, List.of("close", "volume"));
+  }
+
+  @Benchmark
+  public byte[] jackson() throws IOException {
+    return objectMapper.writeValueAsBytes(stock);
+  }
+
+  @Benchmark
+  public byte[] jacksonGzip() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+      objectMapper.writeValue(out, stock);
+    }
+    return bytes.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] projected() throws IOException {
+    return objectMapper.writeValueAsBytes(projection.apply(stock));
+  }
+
+  @Benchmark
+  public byte[] payloadCache() {
+    return stockPayloadCache.get("MSFT", stock).getGzip();
+  }
+}
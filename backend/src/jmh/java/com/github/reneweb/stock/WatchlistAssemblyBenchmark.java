@@ -0,0 +1,111 @@
+package com.github.reneweb.stock;
+
+import com.github.reneweb.facebook.FBAccessTokenValidator;
+import com.github.reneweb.facebook.FBTokenData;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Assembles a watchlist through StockService with every symbol already cached, so only the token
+ * check, the watchlist lookup and the fan-out through StockFetcher are measured. The Graph API and
+ * Alpha Vantage are stubbed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WatchlistAssemblyBenchmark {
+  private static final String TOKEN = "token";
+  private static final String USER_ID = "user";
+
+  @Param({"1", "10", "50"})
+  private int watchlistSize;
+
+  private StockFetcher stockFetcher;
+  private StockService stockService;
+
+  @Setup
+  public void setup() throws IOException {
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    AlphaVantageParser parser = new AlphaVantageParser(Jackson2ObjectMapperBuilder.json().build());
+    byte[] body = AlphaVantageParseBenchmark.intradayResponse(100).getBytes(StandardCharsets.UTF_8);
+    Map<String, Stock> stocks = new HashMap<>();
+    for (int i = 0; i < watchlistSize; i++) {
+      stocks.put("SYM" + i, parser.parse(body));
+    }
+
+    FBAccessTokenValidator tokenValidator =
+        new FBAccessTokenValidator(null, null, meterRegistry, 1, 1) {
+          @Override
+          public FBTokenData validate(String userAccessToken) {
+            return new FBTokenData("app", USER_ID, false);
+          }
+        };
+    StockCache stockCache =
+        new StockCache(
+            null, null, null, null, null, null, Optional.empty(), null, meterRegistry, 1) {
+          @Override
+          public Stock get(String symbol, FetchPriority priority) {
+            return stocks.get(symbol);
+          }
+        };
+    stockFetcher = new StockFetcher(stockCache, meterRegistry, 16, 256, 8000);
+    WatchlistCache watchlistCache = new WatchlistCache(null, meterRegistry, 1, 300);
+    watchlistCache.put(USER_ID, new HashSet<>(stocks.keySet()));
+    WatchlistWriter watchlistWriter =
+        new WatchlistWriter() {
+          @Override
+          public void addSymbol(String userId, String symbol) {}
+
+          @Override
+          public void removeSymbol(String userId, String symbol) {}
+        };
+    stockService =
+        new StockService(
+            tokenValidator,
+            stockCache,
+            stockFetcher,
+            new SymbolIndex(new ByteArrayResource(new byte[0])),
+            watchlistCache,
+            watchlistWriter);
+  }
+
+  @TearDown
+  public void tearDown() {
+    stockFetcher.shutdown();
+  }
+
+  @Benchmark
+  public Set<Stock> watchlist() {
+    return stockService.getWatchlist(TOKEN);
+  }
+
+  @Benchmark
+  public Map<String, StockSummary> summary() {
+    return StockSummary.bySymbol(stockService.getWatchlistStocks(TOKEN));
+  }
+}
@@ -5,12 +5,15 @@ import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsyncClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
 import com.github.reneweb.stock.StockRepository;
 import org.socialsignin.spring.data.dynamodb.repository.config.EnableDynamoDBRepositories;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 @Configuration
 @EnableDynamoDBRepositories(basePackageClasses = StockRepository.class)
@@ -26,6 +29,7 @@ public class DynamoDBConfig {
   private String amazonAWSSecretKey;
 
   @Bean
+  @Primary
   public AmazonDynamoDB amazonDynamoDB() {
     AWSStaticCredentialsProvider awsCredentialsProvider =
         new AWSStaticCredentialsProvider(
@@ -46,4 +50,26 @@ public class DynamoDBConfig {
           .build();
     }
   }
+
+  @Bean
+  public AmazonDynamoDBAsync amazonDynamoDBAsync() {
+    AWSStaticCredentialsProvider awsCredentialsProvider =
+        new AWSStaticCredentialsProvider(
+            new BasicAWSCredentials(amazonAWSAccessKey, amazonAWSSecretKey));
+
+    if (!amazonDynamoDbEndpoint.isEmpty()) {
+      AwsClientBuilder.EndpointConfiguration endpoint =
+          new AwsClientBuilder.EndpointConfiguration(
+              amazonDynamoDbEndpoint, Regions.DEFAULT_REGION.getName());
+      return AmazonDynamoDBAsyncClientBuilder.standard()
+          .withCredentials(awsCredentialsProvider)
+          .withEndpointConfiguration(endpoint)
+          .build();
+    } else {
+      return AmazonDynamoDBAsyncClientBuilder.standard()
+          .withCredentials(awsCredentialsProvider)
+          .withRegion(Regions.DEFAULT_REGION)
+          .build();
+    }
+  }
 }
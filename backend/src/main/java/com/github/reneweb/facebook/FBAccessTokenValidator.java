@@ -1,49 +1,171 @@
 package com.github.reneweb.facebook;
 
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.retry.annotation.Retry;
-import java.util.Map;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
 
+/**
+ * Validates user access tokens against the Graph API and caches valid tokens until they expire (at
+ * most for the configured TTL). Tokens are only kept as SHA-256 hashes.
+ */
 @Component
 public class FBAccessTokenValidator {
-  private static final String URL =
-      "https://graph.facebook.com/debug_token?input_token={token}&access_token={appToken}";
 
-  private final String appId;
-  private final String appSecret;
-  private final RestTemplate restTemplate;
+  private final FBGraphClient fbGraphClient;
+  private final ReactiveFBGraphClient reactiveFBGraphClient;
+  private final Clock clock;
+  private final Cache<String, FBTokenData> cache;
 
   @Autowired
   public FBAccessTokenValidator(
-      @Value("${FB_APP_ID}") String appId,
-      @Value("${FB_APP_SECRET}") String appSecret,
-      RestTemplate restTemplate) {
-    this.appId = appId;
-    this.appSecret = appSecret;
-    this.restTemplate = restTemplate;
+      FBGraphClient fbGraphClient,
+      ReactiveFBGraphClient reactiveFBGraphClient,
+      MeterRegistry meterRegistry,
+      @Value("${fb.token-cache.maximum-size}") long maximumSize,
+      @Value("${fb.token-cache.max-ttl-seconds}") long maxTtlSeconds) {
+    this(
+        fbGraphClient,
+        reactiveFBGraphClient,
+        meterRegistry,
+        maximumSize,
+        Duration.ofSeconds(maxTtlSeconds),
+        Clock.systemUTC(),
+        Ticker.systemTicker());
+  }
+
+  FBAccessTokenValidator(
+      FBGraphClient fbGraphClient,
+      ReactiveFBGraphClient reactiveFBGraphClient,
+      MeterRegistry meterRegistry,
+      long maximumSize,
+      Duration maxTtl,
+      Clock clock,
+      Ticker ticker) {
+    this.fbGraphClient = fbGraphClient;
+    this.reactiveFBGraphClient = reactiveFBGraphClient;
+    this.clock = clock;
+    this.cache =
+        CaffeineCacheMetrics.monitor(
+            meterRegistry,
+            Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new UntilTokenExpires(clock, maxTtl))
+                .ticker(ticker)
+                .recordStats()
+                .build(),
+            "fbtokens");
   }
 
-  @CircuitBreaker(name = "FbClient")
-  @Retry(name = "FbClient")
   public FBTokenData validate(String userAccessToken) {
-    ResponseEntity<FBTokenData> fbResponse =
-        restTemplate.getForEntity(
-            URL,
-            FBTokenData.class,
-            Map.of("token", userAccessToken, "appToken", String.format("%s|%s", appId, appSecret)));
-
-    FBTokenData data = fbResponse.getBody();
-    if (!data.hasError()) {
-      return data;
-    } else {
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid token");
+    String key = hash(userAccessToken);
+    FBTokenData cached = cache.getIfPresent(key);
+    if (cached != null) {
+      return cached;
+    }
+
+    try {
+      return accept(key, fbGraphClient.debugToken(userAccessToken));
+    } catch (HttpClientErrorException e) {
+      throw reject(key, e);
+    }
+  }
+
+  public Mono<FBTokenData> validateAsync(String userAccessToken) {
+    String key = hash(userAccessToken);
+    FBTokenData cached = cache.getIfPresent(key);
+    if (cached != null) {
+      return Mono.just(cached);
+    }
+
+    return reactiveFBGraphClient
+        .debugToken(userAccessToken)
+        .onErrorMap(
+            WebClientResponseException.class,
+            e -> e.getStatusCode().is4xxClientError() ? reject(key, e) : e)
+        .map(data -> accept(key, data));
+  }
+
+  public void invalidate(String userAccessToken) {
+    cache.invalidate(hash(userAccessToken));
+  }
+
+  private FBTokenData accept(String key, FBTokenData data) {
+    if (data.hasError()) {
+      throw reject(key, null);
+    }
+    if (!isExpired(data)) {
+      cache.put(key, data);
+    }
+    return data;
+  }
+
+  private ResponseStatusException reject(String key, Exception cause) {
+    cache.invalidate(key);
+    return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid token", cause);
+  }
+
+  private boolean isExpired(FBTokenData data) {
+    return data.getExpiresAt() != 0
+        && !clock.instant().isBefore(Instant.ofEpochSecond(data.getExpiresAt()));
+  }
+
+  private static String hash(String userAccessToken) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return Base64.getEncoder()
+          .encodeToString(digest.digest(userAccessToken.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class UntilTokenExpires implements Expiry<String, FBTokenData> {
+    private final Clock clock;
+    private final Duration maxTtl;
+
+    UntilTokenExpires(Clock clock, Duration maxTtl) {
+      this.clock = clock;
+      this.maxTtl = maxTtl;
+    }
+
+    @Override
+    public long expireAfterCreate(String key, FBTokenData data, long currentTime) {
+      if (data.getExpiresAt() == 0) {
+        return maxTtl.toNanos();
+      }
+      Duration untilExpiry =
+          Duration.between(clock.instant(), Instant.ofEpochSecond(data.getExpiresAt()));
+      return Math.max(0, Math.min(maxTtl.toNanos(), untilExpiry.toNanos()));
+    }
+
+    @Override
+    public long expireAfterUpdate(
+        String key, FBTokenData data, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, data, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(
+        String key, FBTokenData data, long currentTime, long currentDuration) {
+      return currentDuration;
     }
   }
 }
@@ -0,0 +1,42 @@
+package com.github.reneweb.facebook;
+
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.retry.annotation.Retry;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+@Component
+public class FBGraphClient {
+  private static final String URL =
+      "https://graph.facebook.com/debug_token?input_token={token}&access_token={appToken}";
+
+  private final String appId;
+  private final String appSecret;
+  private final RestTemplate restTemplate;
+
+  @Autowired
+  public FBGraphClient(
+      @Value("${FB_APP_ID}") String appId,
+      @Value("${FB_APP_SECRET}") String appSecret,
+      RestTemplate restTemplate) {
+    this.appId = appId;
+    this.appSecret = appSecret;
+    this.restTemplate = restTemplate;
+  }
+
+  @CircuitBreaker(name = "FbClient")
+  @Retry(name = "FbClient")
+  public FBTokenData debugToken(String userAccessToken) {
+    ResponseEntity<FBTokenData> fbResponse =
+        restTemplate.getForEntity(
+            URL,
+            FBTokenData.class,
+            Map.of("token", userAccessToken, "appToken", String.format("%s|%s", appId, appSecret)));
+
+    return fbResponse.getBody();
+  }
+}
@@ -10,12 +10,19 @@ public class FBTokenData {
 
   private boolean error;
 
+  private long expiresAt;
+
   public FBTokenData() {}
 
   public FBTokenData(String appId, String userId, boolean error) {
+    this(appId, userId, error, 0);
+  }
+
+  public FBTokenData(String appId, String userId, boolean error, long expiresAt) {
     this.appId = appId;
     this.userId = userId;
     this.error = error;
+    this.expiresAt = expiresAt;
   }
 
   @JsonProperty("data")
@@ -26,6 +33,9 @@ public class FBTokenData {
     if (data.containsKey("user_id")) {
       userId = data.get("user_id").toString();
     }
+    if (data.get("expires_at") instanceof Number) {
+      expiresAt = ((Number) data.get("expires_at")).longValue();
+    }
 
     error = data.containsKey("error");
   }
@@ -38,6 +48,11 @@ public class FBTokenData {
     return userId;
   }
 
+  /** Epoch seconds at which the token expires, 0 if it never expires. */
+  public long getExpiresAt() {
+    return expiresAt;
+  }
+
   public boolean hasError() {
     return error;
   }
@@ -0,0 +1,47 @@
+package com.github.reneweb.facebook;
+
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.retry.annotation.Retry;
+import java.time.Duration;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+@Component
+public class ReactiveFBGraphClient {
+  private static final String URL =
+      "https://graph.facebook.com/debug_token?input_token={token}&access_token={appToken}";
+
+  private final String appId;
+  private final String appSecret;
+  private final WebClient webClient;
+  private final Duration timeout;
+
+  @Autowired
+  public ReactiveFBGraphClient(
+      @Value("${FB_APP_ID}") String appId,
+      @Value("${FB_APP_SECRET}") String appSecret,
+      @Value("${http.client.read-timeout-ms}") long timeoutMillis,
+      WebClient.Builder webClientBuilder) {
+    this.appId = appId;
+    this.appSecret = appSecret;
+    this.webClient = webClientBuilder.build();
+    this.timeout = Duration.ofMillis(timeoutMillis);
+  }
+
+  @CircuitBreaker(name = "FbClient")
+  @Retry(name = "FbClient")
+  public Mono<FBTokenData> debugToken(String userAccessToken) {
+    return webClient
+        .get()
+        .uri(
+            URL,
+            Map.of("token", userAccessToken, "appToken", String.format("%s|%s", appId, appSecret)))
+        .retrieve()
+        .bodyToMono(FBTokenData.class)
+        .timeout(timeout);
+  }
+}
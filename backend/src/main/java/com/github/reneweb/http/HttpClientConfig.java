@@ -0,0 +1,116 @@
+package com.github.reneweb.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+@Configuration
+public class HttpClientConfig {
+
+  @Value("${http.client.max-total}")
+  private int maxTotal;
+
+  @Value("${http.client.max-per-route}")
+  private int maxPerRoute;
+
+  @Value("${http.client.alphavantage.max-connections}")
+  private int alphaVantageMaxConnections;
+
+  @Value("${http.client.facebook.max-connections}")
+  private int facebookMaxConnections;
+
+  @Value("${http.client.connect-timeout-ms}")
+  private int connectTimeout;
+
+  @Value("${http.client.read-timeout-ms}")
+  private int readTimeout;
+
+  @Value("${http.client.connection-request-timeout-ms}")
+  private int connectionRequestTimeout;
+
+  @Value("${http.client.keep-alive-ms}")
+  private long keepAlive;
+
+  @Value("${http.client.idle-timeout-ms}")
+  private long idleTimeout;
+
+  @Value("${http.client.validate-after-inactivity-ms}")
+  private int validateAfterInactivity;
+
+  @Bean
+  public PoolingHttpClientConnectionManager connectionManager(MeterRegistry meterRegistry) {
+    PoolingHttpClientConnectionManager connectionManager =
+        new InstrumentedConnectionManager(meterRegistry.timer("httpclient.pool.wait"));
+    connectionManager.setMaxTotal(maxTotal);
+    connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+    connectionManager.setMaxPerRoute(httpsRoute("www.alphavantage.co"), alphaVantageMaxConnections);
+    connectionManager.setMaxPerRoute(httpsRoute("graph.facebook.com"), facebookMaxConnections);
+    connectionManager.setValidateAfterInactivity(validateAfterInactivity);
+
+    registerPoolGauge(meterRegistry, connectionManager, "leased", PoolStats::getLeased);
+    registerPoolGauge(meterRegistry, connectionManager, "available", PoolStats::getAvailable);
+    registerPoolGauge(meterRegistry, connectionManager, "pending", PoolStats::getPending);
+    registerPoolGauge(meterRegistry, connectionManager, "max", PoolStats::getMax);
+    return connectionManager;
+  }
+
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager connectionManager) {
+    ConnectionKeepAliveStrategy keepAliveStrategy =
+        (response, context) -> {
+          long duration =
+              DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+          return duration > 0 ? duration : keepAlive;
+        };
+
+    return HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setKeepAliveStrategy(keepAliveStrategy)
+        .evictExpiredConnections()
+        .evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  @Bean
+  public RestTemplate restTemplate(
+      RestTemplateBuilder restTemplateBuilder, CloseableHttpClient httpClient) {
+    HttpComponentsClientHttpRequestFactory requestFactory =
+        new HttpComponentsClientHttpRequestFactory(httpClient);
+    requestFactory.setConnectTimeout(connectTimeout);
+    requestFactory.setReadTimeout(readTimeout);
+    requestFactory.setConnectionRequestTimeout(connectionRequestTimeout);
+    return restTemplateBuilder.requestFactory(() -> requestFactory).build();
+  }
+
+  private static HttpRoute httpsRoute(String hostname) {
+    return new HttpRoute(new HttpHost(hostname, 443, "https"), null, true);
+  }
+
+  private static void registerPoolGauge(
+      MeterRegistry meterRegistry,
+      PoolingHttpClientConnectionManager connectionManager,
+      String state,
+      ToDoubleFunction<PoolStats> value) {
+    Gauge.builder(
+            "httpclient.pool.connections",
+            connectionManager,
+            manager -> value.applyAsDouble(manager.getTotalStats()))
+        .tag("state", state)
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,72 @@
+package com.github.reneweb.stock;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Reads the intraday response token by token straight into a {@link StockSeries}. Everything except
+ * the time series is skipped. Alpha Vantage answers unknown symbols and exceeded quotas with 200
+ * and a message, which are turned into a bad request and an unavailable service here. A response
+ * without bars is a bad gateway, so it never ends up in a cache.
+ */
+@Component
+public class AlphaVantageParser {
+  private static final String TIME_SERIES = "Time Series (5min)";
+  private static final String ERROR_MESSAGE = "Error Message";
+  private static final Set<String> QUOTA_MESSAGES = Set.of("Note", "Information");
+
+  private final JsonFactory jsonFactory;
+
+  @Autowired
+  public AlphaVantageParser(ObjectMapper objectMapper) {
+    this.jsonFactory = objectMapper.getFactory();
+  }
+
+  public Stock parse(InputStream body) throws IOException {
+    try (JsonParser parser = jsonFactory.createParser(body)) {
+      return parse(parser);
+    }
+  }
+
+  public Stock parse(byte[] body) throws IOException {
+    try (JsonParser parser = jsonFactory.createParser(body)) {
+      return parse(parser);
+    }
+  }
+
+  private Stock parse(JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw JsonMappingException.from(parser, "Expected response object");
+    }
+
+    StockSeries series = StockSeries.EMPTY;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (TIME_SERIES.equals(field)) {
+        series = StockSeries.read(parser);
+      } else if (ERROR_MESSAGE.equals(field)) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid stock symbol");
+      } else if (QUOTA_MESSAGES.contains(field)) {
+        throw new ResponseStatusException(
+            HttpStatus.SERVICE_UNAVAILABLE, "Stock data rate limit exceeded");
+      } else {
+        parser.skipChildren();
+      }
+    }
+    if (series.isEmpty()) {
+      throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "No stock data received");
+    }
+    return new Stock(series);
+  }
+}
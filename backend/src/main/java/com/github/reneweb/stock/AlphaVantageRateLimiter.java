@@ -0,0 +1,186 @@
+package com.github.reneweb.stock;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Token bucket that keeps the calls to Alpha Vantage within the per-minute quota. When no permit is
+ * available, callers are queued and served by priority, then in arrival order. Callers that wait
+ * longer than the configured maximum are rejected.
+ */
+@Component
+public class AlphaVantageRateLimiter {
+
+  private final MeterRegistry meterRegistry;
+  private final LongSupplier nanoTime;
+  private final ScheduledExecutorService scheduler;
+  private final long nanosPerPermit;
+  private final int burst;
+  private final long maxWaitMillis;
+  private final AtomicLong sequence = new AtomicLong();
+  private final PriorityQueue<Waiter> queue = new PriorityQueue<>();
+
+  private double permits;
+  private long lastRefill;
+  private boolean drainScheduled;
+
+  @Autowired
+  public AlphaVantageRateLimiter(
+      MeterRegistry meterRegistry,
+      @Value("${stock.rate-limit.calls-per-minute}") int callsPerMinute,
+      @Value("${stock.rate-limit.burst}") int burst,
+      @Value("${stock.rate-limit.max-wait-ms}") long maxWaitMillis) {
+    this(
+        meterRegistry,
+        callsPerMinute,
+        burst,
+        maxWaitMillis,
+        System::nanoTime,
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "alphavantage-rate-limiter");
+              thread.setDaemon(true);
+              return thread;
+            }));
+  }
+
+  AlphaVantageRateLimiter(
+      MeterRegistry meterRegistry,
+      int callsPerMinute,
+      int burst,
+      long maxWaitMillis,
+      LongSupplier nanoTime,
+      ScheduledExecutorService scheduler) {
+    this.meterRegistry = meterRegistry;
+    this.nanoTime = nanoTime;
+    this.scheduler = scheduler;
+    this.nanosPerPermit = TimeUnit.MINUTES.toNanos(1) / callsPerMinute;
+    this.burst = burst;
+    this.maxWaitMillis = maxWaitMillis;
+    this.permits = burst;
+    this.lastRefill = nanoTime.getAsLong();
+
+    Gauge.builder("stock.ratelimit.queue", this, AlphaVantageRateLimiter::queueDepth)
+        .register(meterRegistry);
+  }
+
+  public void acquire(FetchPriority priority) {
+    try {
+      acquireAsync(priority).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  public CompletableFuture<Void> acquireAsync(FetchPriority priority) {
+    Waiter waiter = new Waiter(priority, sequence.getAndIncrement(), nanoTime.getAsLong());
+    synchronized (this) {
+      queue.add(waiter);
+    }
+    drain();
+
+    if (!waiter.granted.isDone()) {
+      scheduler.schedule(() -> reject(waiter), maxWaitMillis, TimeUnit.MILLISECONDS);
+    }
+    return waiter.granted;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  private void drain() {
+    List<Waiter> granted = new ArrayList<>();
+    synchronized (this) {
+      refill();
+      while (!queue.isEmpty() && permits >= 1) {
+        permits -= 1;
+        granted.add(queue.poll());
+      }
+      if (!queue.isEmpty() && !drainScheduled) {
+        drainScheduled = true;
+        long untilNextPermit = (long) ((1 - permits) * nanosPerPermit);
+        scheduler.schedule(this::scheduledDrain, untilNextPermit, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    long now = nanoTime.getAsLong();
+    for (Waiter waiter : granted) {
+      meterRegistry
+          .timer("stock.ratelimit.wait", "priority", waiter.priority.name())
+          .record(now - waiter.enqueued, TimeUnit.NANOSECONDS);
+      waiter.granted.complete(null);
+    }
+  }
+
+  private void scheduledDrain() {
+    synchronized (this) {
+      drainScheduled = false;
+    }
+    drain();
+  }
+
+  private void refill() {
+    long now = nanoTime.getAsLong();
+    permits = Math.min(burst, permits + (double) (now - lastRefill) / nanosPerPermit);
+    lastRefill = now;
+  }
+
+  private void reject(Waiter waiter) {
+    boolean waiting;
+    synchronized (this) {
+      waiting = queue.remove(waiter);
+    }
+    if (waiting) {
+      meterRegistry
+          .counter("stock.ratelimit.rejected", "priority", waiter.priority.name())
+          .increment();
+      waiter.granted.completeExceptionally(
+          new ResponseStatusException(
+              HttpStatus.SERVICE_UNAVAILABLE, "Stock data rate limit exceeded"));
+    }
+  }
+
+  private synchronized int queueDepth() {
+    return queue.size();
+  }
+
+  private static class Waiter implements Comparable<Waiter> {
+    private final FetchPriority priority;
+    private final long sequence;
+    private final long enqueued;
+    private final CompletableFuture<Void> granted = new CompletableFuture<>();
+
+    Waiter(FetchPriority priority, long sequence, long enqueued) {
+      this.priority = priority;
+      this.sequence = sequence;
+      this.enqueued = enqueued;
+    }
+
+    @Override
+    public int compareTo(Waiter other) {
+      int byPriority = priority.compareTo(other.priority);
+      return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.github.reneweb.stock;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+final class AuthorizationHeaders {
+
+  private AuthorizationHeaders() {}
+
+  static String getToken(String authorizationHeader) {
+    String[] authHeaderSplit = authorizationHeader.split(" ");
+    if (authHeaderSplit.length < 2) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid Authorization Header");
+    }
+
+    return authHeaderSplit[1];
+  }
+}
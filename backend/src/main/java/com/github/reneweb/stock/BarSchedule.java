@@ -0,0 +1,22 @@
+package com.github.reneweb.stock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/** The stock data is published in 5 minute bars, so it only changes at the bar boundaries. */
+public final class BarSchedule {
+  public static final Duration INTERVAL = Duration.ofMinutes(5);
+
+  private BarSchedule() {}
+
+  public static Instant nextBoundary(Instant now) {
+    long intervalMillis = INTERVAL.toMillis();
+    return Instant.ofEpochMilli((now.toEpochMilli() / intervalMillis + 1) * intervalMillis);
+  }
+
+  public static Duration untilNextBoundary(Clock clock) {
+    Instant now = clock.instant();
+    return Duration.between(now, nextBoundary(now));
+  }
+}
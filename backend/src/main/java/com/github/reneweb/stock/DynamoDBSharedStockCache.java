@@ -0,0 +1,151 @@
+package com.github.reneweb.stock;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shared cache in the StockCache table, keyed by symbol. Items hold the binary series and expire at
+ * the next bar boundary; expiresAt should be configured as the table's TTL attribute, which only
+ * cleans up, as DynamoDB may delete expired items much later. Failures are treated as a miss so
+ * requests fall back to Alpha Vantage.
+ */
+@Component
+@ConditionalOnProperty(name = "stock.shared-cache.enabled", havingValue = "true")
+public class DynamoDBSharedStockCache implements SharedStockCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DynamoDBSharedStockCache.class);
+  private static final String TABLE = "StockCache";
+
+  private final AmazonDynamoDB amazonDynamoDB;
+  private final AmazonDynamoDBAsync amazonDynamoDBAsync;
+  private final MeterRegistry meterRegistry;
+  private final Clock clock;
+
+  @Autowired
+  public DynamoDBSharedStockCache(
+      AmazonDynamoDB amazonDynamoDB,
+      AmazonDynamoDBAsync amazonDynamoDBAsync,
+      MeterRegistry meterRegistry) {
+    this(amazonDynamoDB, amazonDynamoDBAsync, meterRegistry, Clock.systemUTC());
+  }
+
+  DynamoDBSharedStockCache(
+      AmazonDynamoDB amazonDynamoDB,
+      AmazonDynamoDBAsync amazonDynamoDBAsync,
+      MeterRegistry meterRegistry,
+      Clock clock) {
+    this.amazonDynamoDB = amazonDynamoDB;
+    this.amazonDynamoDBAsync = amazonDynamoDBAsync;
+    this.meterRegistry = meterRegistry;
+    this.clock = clock;
+  }
+
+  @Override
+  public Stock get(String key) {
+    try {
+      GetItemResult result =
+          meterRegistry
+              .timer("dynamodb", "operation", "getSharedStock")
+              .record(() -> amazonDynamoDB.getItem(request(key)));
+      return toStock(result);
+    } catch (AmazonClientException e) {
+      LOGGER.warn("Reading stock data for symbol {} from the shared cache failed", key, e);
+      return null;
+    }
+  }
+
+  @Override
+  public CompletableFuture<Stock> getAsync(String key) {
+    CompletableFuture<Stock> future = new CompletableFuture<>();
+    Timer.Sample sample = Timer.start(meterRegistry);
+    amazonDynamoDBAsync.getItemAsync(
+        request(key),
+        new AsyncHandler<GetItemRequest, GetItemResult>() {
+          @Override
+          public void onError(Exception exception) {
+            sample.stop(meterRegistry.timer("dynamodb", "operation", "getSharedStockAsync"));
+            LOGGER.warn(
+                "Reading stock data for symbol {} from the shared cache failed", key, exception);
+            future.complete(null);
+          }
+
+          @Override
+          public void onSuccess(GetItemRequest request, GetItemResult result) {
+            sample.stop(meterRegistry.timer("dynamodb", "operation", "getSharedStockAsync"));
+            future.complete(toStock(result));
+          }
+        });
+    return future;
+  }
+
+  @Override
+  public void put(String key, Stock stock, Instant expiresAt) {
+    PutItemRequest request =
+        new PutItemRequest()
+            .withTableName(TABLE)
+            .withItem(
+                Map.of(
+                    "symbol", new AttributeValue(key),
+                    "series",
+                        new AttributeValue()
+                            .withB(ByteBuffer.wrap(StockSeriesCodec.encode(stock.getSeries()))),
+                    "expiresAt",
+                        new AttributeValue().withN(Long.toString(expiresAt.getEpochSecond()))));
+
+    Timer.Sample sample = Timer.start(meterRegistry);
+    amazonDynamoDBAsync.putItemAsync(
+        request,
+        new AsyncHandler<PutItemRequest, PutItemResult>() {
+          @Override
+          public void onError(Exception exception) {
+            sample.stop(meterRegistry.timer("dynamodb", "operation", "putSharedStock"));
+            LOGGER.warn(
+                "Writing stock data for symbol {} to the shared cache failed", key, exception);
+          }
+
+          @Override
+          public void onSuccess(PutItemRequest request, PutItemResult result) {
+            sample.stop(meterRegistry.timer("dynamodb", "operation", "putSharedStock"));
+          }
+        });
+  }
+
+  private static GetItemRequest request(String key) {
+    return new GetItemRequest()
+        .withTableName(TABLE)
+        .withKey(Map.of("symbol", new AttributeValue(key)));
+  }
+
+  private Stock toStock(GetItemResult result) {
+    Map<String, AttributeValue> item = result.getItem();
+    if (item == null || !item.containsKey("series") || !item.containsKey("expiresAt")) {
+      return null;
+    }
+    long expiresAt = Long.parseLong(item.get("expiresAt").getN());
+    if (expiresAt <= clock.instant().getEpochSecond()) {
+      return null;
+    }
+    ByteBuffer series = item.get("series").getB();
+    byte[] bytes = new byte[series.remaining()];
+    series.duplicate().get(bytes);
+    return new Stock(StockSeriesCodec.decode(bytes));
+  }
+}
@@ -0,0 +1,8 @@
+package com.github.reneweb.stock;
+
+/** Priority of an upstream fetch when calls have to wait for the rate limit, highest first. */
+public enum FetchPriority {
+  INTERACTIVE,
+  VALIDATION,
+  BACKGROUND
+}
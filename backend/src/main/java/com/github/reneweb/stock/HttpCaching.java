@@ -0,0 +1,96 @@
+package com.github.reneweb.stock;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.springframework.http.CacheControl;
+import org.springframework.util.DigestUtils;
+
+/**
+ * ETags and Cache-Control for responses built from cached bars. Such a response only changes when a
+ * new bar arrives, so it can be cached until the next bar boundary. Returning the ETag on a
+ * ResponseEntity lets Spring answer a matching If-None-Match with 304 Not Modified.
+ */
+final class HttpCaching {
+
+  private HttpCaching() {}
+
+  /** Symbols are upper-cased like the StockCache key, so every casing shares one ETag. */
+  static String eTag(String symbol, Stock stock, Object... variant) {
+    StringBuilder key =
+        new StringBuilder(symbol.toUpperCase(Locale.ROOT)).append(':').append(lastBar(stock));
+    for (Object part : variant) {
+      key.append('\n').append(part);
+    }
+    return quote(key);
+  }
+
+  /** Derived from the symbol set and each symbol's last bar, iteration order does not matter. */
+  static String eTag(Map<String, Stock> stocks) {
+    StringBuilder key = new StringBuilder();
+    stocks.entrySet().stream()
+        .sorted(Map.Entry.comparingByKey())
+        .forEach(
+            entry ->
+                key.append(entry.getKey())
+                    .append(':')
+                    .append(lastBar(entry.getValue()))
+                    .append('\n'));
+    return quote(key);
+  }
+
+  /** Shared caches like a CDN may only store responses that are the same for every user. */
+  static CacheControl untilNextBar(Clock clock, boolean shared) {
+    long seconds = (BarSchedule.untilNextBoundary(clock).toMillis() + 999) / 1000;
+    CacheControl cacheControl = CacheControl.maxAge(seconds, TimeUnit.SECONDS);
+    return shared ? cacheControl.cachePublic() : cacheControl.cachePrivate();
+  }
+
+  /** The ETag of the gzip encoded representation, which must differ from the identity one. */
+  static String gzipETag(String eTag) {
+    return eTag.substring(0, eTag.length() - 1) + "-gzip\"";
+  }
+
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    Boolean wildcard = null;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      String name = parts[0].trim();
+      boolean accepted = parts.length < 2 || !isZeroQuality(parts[1]);
+      if (name.equalsIgnoreCase("gzip")) {
+        return accepted;
+      } else if (name.equals("*")) {
+        wildcard = accepted;
+      }
+    }
+    return Boolean.TRUE.equals(wildcard);
+  }
+
+  private static boolean isZeroQuality(String parameter) {
+    String[] pair = parameter.trim().split("=", 2);
+    if (pair.length < 2 || !pair[0].trim().equalsIgnoreCase("q")) {
+      return false;
+    }
+    try {
+      return Double.parseDouble(pair[1].trim()) == 0;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private static long lastBar(Stock stock) {
+    StockSeries series = stock.getSeries();
+    return series.isEmpty() ? 0 : series.getTimestamp(series.size() - 1);
+  }
+
+  private static String quote(CharSequence key) {
+    return "\""
+        + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8))
+        + "\"";
+  }
+}
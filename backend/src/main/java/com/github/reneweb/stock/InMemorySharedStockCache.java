@@ -0,0 +1,49 @@
+package com.github.reneweb.stock;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stand-in for a shared cache within one JVM, e.g. for tests or to run several StockCache instances
+ * side by side. Stocks go through the binary form like in the DynamoDB table.
+ */
+public class InMemorySharedStockCache implements SharedStockCache {
+  private final Clock clock;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  public InMemorySharedStockCache(Clock clock) {
+    this.clock = clock;
+  }
+
+  @Override
+  public Stock get(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null || !entry.expiresAt.isAfter(clock.instant())) {
+      return null;
+    }
+    return new Stock(StockSeriesCodec.decode(entry.series));
+  }
+
+  @Override
+  public CompletableFuture<Stock> getAsync(String key) {
+    return CompletableFuture.completedFuture(get(key));
+  }
+
+  @Override
+  public void put(String key, Stock stock, Instant expiresAt) {
+    entries.put(key, new Entry(StockSeriesCodec.encode(stock.getSeries()), expiresAt));
+  }
+
+  private static final class Entry {
+    private final byte[] series;
+    private final Instant expiresAt;
+
+    private Entry(byte[] series, Instant expiresAt) {
+      this.series = series;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
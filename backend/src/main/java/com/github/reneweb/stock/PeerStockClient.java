@@ -0,0 +1,93 @@
+package com.github.reneweb.stock;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads a symbol from the node owning it, which fetches it from Alpha Vantage at most once per bar
+ * for the whole cluster. Completes empty if this node is the owner, or if the owner could not be
+ * reached in time so the caller fetches the symbol itself. An invalid symbol is reported as such.
+ *
+ * <p>The owner fetches with the caller's priority, so prefetches of other nodes do not compete with
+ * user requests. Requests carry the shared cluster secret, which is required once nodes are
+ * configured. The timeout has to exceed the owner's wait for the rate limiter, otherwise a caller
+ * gives up on an owner that is still going to fetch the symbol and fetches it a second time.
+ */
+@Component
+public class PeerStockClient {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PeerStockClient.class);
+  static final String PATH = "/internal/stocks/{symbol}";
+  static final String SECRET_HEADER = "X-Cluster-Secret";
+
+  private final SymbolOwnership symbolOwnership;
+  private final MeterRegistry meterRegistry;
+  private final WebClient webClient;
+  private final Duration timeout;
+  private final String secret;
+
+  @Autowired
+  public PeerStockClient(
+      SymbolOwnership symbolOwnership,
+      MeterRegistry meterRegistry,
+      WebClient.Builder webClientBuilder,
+      @Value("${cluster.forward-timeout-ms}") long timeoutMillis,
+      @Value("${stock.rate-limit.max-wait-ms}") long ownerMaxWaitMillis,
+      @Value("${cluster.secret}") String secret) {
+    if (!symbolOwnership.getMembers().isEmpty() && secret.isEmpty()) {
+      throw new IllegalStateException("cluster.secret is required when cluster.nodes is set");
+    }
+    if (timeoutMillis <= ownerMaxWaitMillis) {
+      throw new IllegalStateException(
+          "cluster.forward-timeout-ms must exceed stock.rate-limit.max-wait-ms");
+    }
+    this.symbolOwnership = symbolOwnership;
+    this.meterRegistry = meterRegistry;
+    this.webClient = webClientBuilder.build();
+    this.timeout = Duration.ofMillis(timeoutMillis);
+    this.secret = secret;
+  }
+
+  public Mono<Stock> fetchFromOwner(String key, FetchPriority priority) {
+    if (symbolOwnership.isOwner(key)) {
+      return Mono.empty();
+    }
+
+    String owner = symbolOwnership.ownerOf(key);
+    return webClient
+        .get()
+        .uri(owner + PATH + "?priority={priority}", key, priority)
+        .header(SECRET_HEADER, secret)
+        .accept(MediaType.APPLICATION_OCTET_STREAM)
+        .retrieve()
+        .onStatus(
+            status -> status.value() == 400,
+            response ->
+                Mono.error(
+                    new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid stock symbol")))
+        .onStatus(
+            HttpStatus::isError,
+            response ->
+                Mono.error(new IllegalStateException("Owner responded " + response.statusCode())))
+        .bodyToMono(byte[].class)
+        .timeout(timeout)
+        .map(bytes -> new Stock(StockSeriesCodec.decode(bytes)))
+        .doOnNext(stock -> meterRegistry.counter("stock.forward", "outcome", "success").increment())
+        .onErrorResume(
+            error -> !(error instanceof ResponseStatusException),
+            error -> {
+              LOGGER.warn("Fetching stock data for symbol {} from {} failed", key, owner, error);
+              meterRegistry.counter("stock.forward", "outcome", "failure").increment();
+              return Mono.empty();
+            });
+  }
+}
@@ -0,0 +1,49 @@
+package com.github.reneweb.stock;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Serves the symbols owned by this node to the other nodes of the cluster, in the binary form of
+ * the shared cache. Only requests carrying the cluster secret are served, everyone else gets a not
+ * found, as does every request while no secret is configured.
+ */
+@RestController
+public class PeerStockController {
+
+  private final StockService stockService;
+  private final byte[] secret;
+
+  @Autowired
+  public PeerStockController(StockService stockService, @Value("${cluster.secret}") String secret) {
+    this.stockService = stockService;
+    this.secret = secret.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @GetMapping(value = PeerStockClient.PATH, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+  public byte[] getOwnedStock(
+      @PathVariable String symbol,
+      @RequestParam(defaultValue = "INTERACTIVE") FetchPriority priority,
+      @RequestHeader(value = PeerStockClient.SECRET_HEADER, required = false) String secret) {
+    if (!isPeer(secret)) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+    }
+    return StockSeriesCodec.encode(stockService.getOwnedStock(symbol, priority).getSeries());
+  }
+
+  private boolean isPeer(String secret) {
+    return this.secret.length > 0
+        && secret != null
+        && MessageDigest.isEqual(this.secret, secret.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,313 @@
+package com.github.reneweb.stock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Live quotes for subscribed symbols. Every symbol is fetched once per bar, no matter how many
+ * subscribers it has, and only the bars added since the last push are serialized, once, and fanned
+ * out to all of them. A subscriber gets a full snapshot first, clients merge bars by timestamp.
+ *
+ * <p>Each subscriber has a bounded queue drained on a shared pool, so a slow connection only delays
+ * itself. A subscriber whose queue overflows is evicted and its connection closed.
+ */
+@Component
+public class QuoteHub {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QuoteHub.class);
+
+  private final StockFetcher stockFetcher;
+  private final ObjectMapper objectMapper;
+  private final MeterRegistry meterRegistry;
+  private final Executor executor;
+  private final int queueCapacity;
+  private final int maxSubscriptions;
+  private final Map<String, Set<Subscription>> subscriptionsBySymbol = new ConcurrentHashMap<>();
+  private final Map<String, Long> lastPublishedBars = new ConcurrentHashMap<>();
+  private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+  // Subscriptions plus subscribers still fetching their snapshots
+  private final AtomicInteger reserved = new AtomicInteger();
+
+  @Autowired
+  public QuoteHub(
+      StockFetcher stockFetcher,
+      ObjectMapper objectMapper,
+      MeterRegistry meterRegistry,
+      @Value("${stock.subscriptions.threads}") int threads,
+      @Value("${stock.subscriptions.queue-capacity}") int queueCapacity,
+      @Value("${stock.subscriptions.max-subscriptions}") int maxSubscriptions) {
+    this(
+        stockFetcher,
+        objectMapper,
+        meterRegistry,
+        ExecutorServiceMetrics.monitor(
+            meterRegistry,
+            Executors.newFixedThreadPool(threads, new DaemonThreadFactory()),
+            "stock.subscriptions"),
+        queueCapacity,
+        maxSubscriptions);
+  }
+
+  QuoteHub(
+      StockFetcher stockFetcher,
+      ObjectMapper objectMapper,
+      MeterRegistry meterRegistry,
+      Executor executor,
+      int queueCapacity,
+      int maxSubscriptions) {
+    this.stockFetcher = stockFetcher;
+    this.objectMapper = objectMapper;
+    this.meterRegistry = meterRegistry;
+    this.executor = executor;
+    this.queueCapacity = queueCapacity;
+    this.maxSubscriptions = maxSubscriptions;
+    meterRegistry.gaugeCollectionSize("stock.subscriptions", List.of(), subscriptions);
+  }
+
+  /**
+   * Sends a snapshot of every symbol that could be fetched and pushes new bars from then on.
+   * Symbols are upper-cased like in StockCache, symbols rejected as invalid are not subscribed. The
+   * slot is reserved before the snapshots are fetched, so concurrent subscribers cannot exceed the
+   * limit while they wait.
+   */
+  public Subscription subscribe(Collection<String> symbols, Sink sink) {
+    reserve();
+    Map<String, StockResult> results;
+    try {
+      results = fetchSnapshots(symbols);
+    } catch (RuntimeException e) {
+      reserved.decrementAndGet();
+      throw e;
+    }
+    Subscription subscription =
+        new Subscription(sink, results.keySet(), queueCapacity + results.size());
+    subscriptions.add(subscription);
+    for (String symbol : subscription.symbols) {
+      subscriptionsBySymbol
+          .computeIfAbsent(symbol, key -> ConcurrentHashMap.newKeySet())
+          .add(subscription);
+    }
+
+    results.forEach(
+        (symbol, result) -> {
+          Stock stock = result.getStock();
+          if (stock != null && !stock.getSeries().isEmpty()) {
+            StockSeries series = stock.getSeries();
+            long lastBar = series.getTimestamp(series.size() - 1);
+            subscriptionsBySymbol.computeIfPresent(
+                symbol,
+                (key, subscribers) -> {
+                  lastPublishedBars.putIfAbsent(symbol, lastBar);
+                  return subscribers;
+                });
+            subscription.offer(new Message("quote", symbol, serialize(symbol, stock)));
+          }
+        });
+    return subscription;
+  }
+
+  private void reserve() {
+    int current;
+    do {
+      current = reserved.get();
+      if (current >= maxSubscriptions) {
+        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many subscriptions");
+      }
+    } while (!reserved.compareAndSet(current, current + 1));
+  }
+
+  /** The results of the symbols, without those rejected as invalid. */
+  private Map<String, StockResult> fetchSnapshots(Collection<String> symbols) {
+    Set<String> normalized = new LinkedHashSet<>();
+    for (String symbol : symbols) {
+      normalized.add(symbol.trim().toUpperCase(Locale.ROOT));
+    }
+    Map<String, StockResult> results = stockFetcher.fetchResults(new ArrayList<>(normalized));
+    results.values().removeIf(QuoteHub::isInvalidSymbol);
+    if (results.isEmpty()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No valid symbols");
+    }
+    return results;
+  }
+
+  public void unsubscribe(Subscription subscription) {
+    if (!subscriptions.remove(subscription)) {
+      return;
+    }
+    reserved.decrementAndGet();
+    for (String symbol : subscription.symbols) {
+      subscriptionsBySymbol.computeIfPresent(
+          symbol,
+          (key, subscribers) -> {
+            subscribers.remove(subscription);
+            if (subscribers.isEmpty()) {
+              lastPublishedBars.remove(symbol);
+              return null;
+            }
+            return subscribers;
+          });
+    }
+    subscription.queue.clear();
+    subscription.sink.close();
+  }
+
+  @Scheduled(cron = "${stock.subscriptions.cron}")
+  public void publish() {
+    stockFetcher.fetchAll(new ArrayList<>(subscriptionsBySymbol.keySet())).forEach(this::publish);
+  }
+
+  void publish(String symbol, Stock stock) {
+    StockSeries series = stock.getSeries();
+    if (series.isEmpty()) {
+      return;
+    }
+    long lastBar = series.getTimestamp(series.size() - 1);
+    AtomicReference<Long> published = new AtomicReference<>();
+    // Only recorded while the symbol has subscribers, the last unsubscribe removes it
+    Set<Subscription> subscribers =
+        subscriptionsBySymbol.computeIfPresent(
+            symbol,
+            (key, current) -> {
+              published.set(lastPublishedBars.put(symbol, lastBar));
+              return current;
+            });
+    Long previous = published.get();
+    if (subscribers == null || (previous != null && previous >= lastBar)) {
+      return;
+    }
+
+    Stock delta = previous == null ? stock : new Stock(series.range(previous + 1, Long.MAX_VALUE));
+    Message message = new Message("delta", symbol, serialize(symbol, delta));
+    for (Subscription subscription : subscribers) {
+      subscription.offer(message);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    new ArrayList<>(subscriptions).forEach(this::unsubscribe);
+    if (executor instanceof ExecutorService) {
+      ((ExecutorService) executor).shutdownNow();
+    }
+  }
+
+  private static boolean isInvalidSymbol(StockResult result) {
+    return result.getStatus() != null && result.getStatus() == HttpStatus.BAD_REQUEST.value();
+  }
+
+  private String serialize(String symbol, Stock stock) {
+    try {
+      return objectMapper.writeValueAsString(new SymbolQuote(symbol, stock));
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize stock", e);
+    }
+  }
+
+  /** The connection of a subscriber, e.g. a server-sent event stream. */
+  public interface Sink {
+    void send(String event, String symbol, String json) throws IOException;
+
+    void close();
+  }
+
+  public final class Subscription {
+    private final Sink sink;
+    private final Set<String> symbols;
+    private final Queue<Message> queue;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /** The queue also has room for the snapshots of all symbols. */
+    private Subscription(Sink sink, Set<String> symbols, int capacity) {
+      this.sink = sink;
+      this.symbols = Collections.unmodifiableSet(new HashSet<>(symbols));
+      this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public Set<String> getSymbols() {
+      return symbols;
+    }
+
+    private void offer(Message message) {
+      if (!queue.offer(message)) {
+        LOGGER.info("Evicting slow subscriber of {}", symbols);
+        meterRegistry.counter("stock.subscriptions.evicted").increment();
+        unsubscribe(this);
+        return;
+      }
+      if (draining.compareAndSet(false, true)) {
+        executor.execute(this::drain);
+      }
+    }
+
+    private void drain() {
+      try {
+        Message message;
+        while ((message = queue.poll()) != null) {
+          sink.send(message.event, message.symbol, message.json);
+        }
+      } catch (IOException | RuntimeException e) {
+        LOGGER.debug("Could not push quote to subscriber of {}", symbols, e);
+        unsubscribe(this);
+        return;
+      } finally {
+        draining.set(false);
+      }
+      if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+        executor.execute(this::drain);
+      }
+    }
+  }
+
+  private static final class Message {
+    private final String event;
+    private final String symbol;
+    private final String json;
+
+    private Message(String event, String symbol, String json) {
+      this.event = event;
+      this.symbol = symbol;
+      this.json = json;
+    }
+  }
+
+  private static class DaemonThreadFactory implements ThreadFactory {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "stock-subscriptions-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
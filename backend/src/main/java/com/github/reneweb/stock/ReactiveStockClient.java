@@ -0,0 +1,79 @@
+package com.github.reneweb.stock;
+
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.retry.annotation.Retry;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+@Component
+public class ReactiveStockClient {
+  private static final String URL =
+      "https://www.alphavantage.co/query?function=TIME_SERIES_INTRADAY&symbol={symbol}&interval=5min&apikey={apikey}";
+
+  private final String apiKey;
+  private final WebClient webClient;
+  private final AlphaVantageParser parser;
+  private final Duration timeout;
+
+  @Autowired
+  public ReactiveStockClient(
+      @Value("${ALPHAVANTAGE_APIKEY}") String apiKey,
+      @Value("${http.client.read-timeout-ms}") long timeoutMillis,
+      WebClient.Builder webClientBuilder,
+      AlphaVantageParser parser) {
+    this.apiKey = apiKey;
+    this.parser = parser;
+    this.webClient = webClientBuilder.build();
+    this.timeout = Duration.ofMillis(timeoutMillis);
+  }
+
+  @CircuitBreaker(name = "StockClient")
+  @Retry(name = "StockClient")
+  public Mono<Stock> fetchStockBySymbol(String symbol) {
+    return webClient
+        .get()
+        .uri(
+            URL,
+            Map.of(
+                "apikey", apiKey,
+                "symbol", symbol))
+        .accept(MediaType.APPLICATION_JSON)
+        .retrieve()
+        .onStatus(
+            status -> status.value() == 400,
+            response ->
+                Mono.error(
+                    new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid stock symbol")))
+        .onStatus(
+            HttpStatus::isError,
+            response ->
+                Mono.error(
+                    new ResponseStatusException(
+                        HttpStatus.INTERNAL_SERVER_ERROR, "Error while retrieving stock data")))
+        .bodyToMono(byte[].class)
+        .map(this::parse)
+        .switchIfEmpty(
+            Mono.error(
+                new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, "Error while retrieving stock data")))
+        .timeout(timeout);
+  }
+
+  private Stock parse(byte[] body) {
+    try {
+      return parser.parse(body);
+    } catch (IOException e) {
+      throw new ResponseStatusException(
+          HttpStatus.INTERNAL_SERVER_ERROR, "Error while retrieving stock data", e);
+    }
+  }
+}
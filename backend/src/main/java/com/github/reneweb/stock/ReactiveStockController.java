@@ -0,0 +1,40 @@
+package com.github.reneweb.stock;
+
+import java.util.List;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/reactive")
+public class ReactiveStockController {
+
+  private final ReactiveStockService reactiveStockService;
+
+  @Autowired
+  public ReactiveStockController(ReactiveStockService reactiveStockService) {
+    this.reactiveStockService = reactiveStockService;
+  }
+
+  @GetMapping("/stocks/{symbol}")
+  public Mono<Stock> getStock(
+      @PathVariable String symbol,
+      @RequestParam(required = false) String from,
+      @RequestParam(required = false) String to,
+      @RequestParam(required = false) Integer last,
+      @RequestParam(required = false) List<String> fields) {
+    StockProjection projection = StockProjection.of(from, to, last, fields);
+    return reactiveStockService.getStock(symbol).map(projection::apply);
+  }
+
+  @GetMapping("/watchlist")
+  public Mono<Set<Stock>> getWatchlist(@RequestHeader("Authorization") String authorizationHeader) {
+    return reactiveStockService.getWatchlist(AuthorizationHeaders.getToken(authorizationHeader));
+  }
+}
@@ -0,0 +1,114 @@
+package com.github.reneweb.stock;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.github.reneweb.facebook.FBAccessTokenValidator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of the read operations in {@link StockService}. It shares the stock and
+ * token caches with the blocking service.
+ */
+@Service
+public class ReactiveStockService {
+
+  private final FBAccessTokenValidator fbAccessTokenValidator;
+  private final StockCache stockCache;
+  private final AmazonDynamoDBAsync amazonDynamoDBAsync;
+  private final WatchlistWriter watchlistWriter;
+  private final WatchlistCache watchlistCache;
+  private final MeterRegistry meterRegistry;
+  private final Duration timeout;
+
+  @Autowired
+  public ReactiveStockService(
+      FBAccessTokenValidator fbAccessTokenValidator,
+      StockCache stockCache,
+      AmazonDynamoDBAsync amazonDynamoDBAsync,
+      WatchlistWriter watchlistWriter,
+      WatchlistCache watchlistCache,
+      MeterRegistry meterRegistry,
+      @Value("${stock.fetch.timeout-ms}") long timeoutMillis) {
+    this.fbAccessTokenValidator = fbAccessTokenValidator;
+    this.stockCache = stockCache;
+    this.amazonDynamoDBAsync = amazonDynamoDBAsync;
+    this.watchlistWriter = watchlistWriter;
+    this.watchlistCache = watchlistCache;
+    this.meterRegistry = meterRegistry;
+    this.timeout = Duration.ofMillis(timeoutMillis);
+  }
+
+  public Mono<Stock> getStock(String symbol) {
+    return Mono.defer(() -> Mono.fromFuture(stockCache.getAsync(symbol)));
+  }
+
+  public Mono<Set<Stock>> getWatchlist(String userAccessToken) {
+    return fbAccessTokenValidator
+        .validateAsync(userAccessToken)
+        .flatMap(tokenData -> findSymbols(tokenData.getUserId()))
+        .flatMapMany(Flux::fromIterable)
+        .flatMap(symbol -> getStock(symbol).onErrorResume(e -> Mono.empty()))
+        .take(timeout)
+        .collect(Collectors.toSet());
+  }
+
+  private Mono<Set<String>> findSymbols(String userId) {
+    return Mono.justOrEmpty(watchlistCache.getIfPresent(userId))
+        .switchIfEmpty(loadSymbols(userId))
+        .map(symbols -> watchlistWriter.withPendingChanges(userId, symbols));
+  }
+
+  private Mono<Set<String>> loadSymbols(String userId) {
+    GetItemRequest request =
+        new GetItemRequest()
+            .withTableName("Watchlist")
+            .withKey(Map.of("userId", new AttributeValue(userId)))
+            .withProjectionExpression("symbols");
+
+    return Mono.defer(
+        () -> {
+          Timer.Sample sample = Timer.start(meterRegistry);
+          return Mono.<GetItemResult>create(
+                  sink -> {
+                    Future<GetItemResult> future =
+                        amazonDynamoDBAsync.getItemAsync(
+                            request,
+                            new AsyncHandler<GetItemRequest, GetItemResult>() {
+                              @Override
+                              public void onError(Exception exception) {
+                                sink.error(exception);
+                              }
+
+                              @Override
+                              public void onSuccess(GetItemRequest request, GetItemResult result) {
+                                sink.success(result);
+                              }
+                            });
+                    sink.onCancel(() -> future.cancel(true));
+                  })
+              .doOnTerminate(
+                  () -> sample.stop(meterRegistry.timer("dynamodb", "operation", "findByIdAsync")))
+              .map(
+                  result ->
+                      result.getItem() == null || !result.getItem().containsKey("symbols")
+                          ? Set.<String>of()
+                          : new HashSet<>(result.getItem().get("symbols").getSS()))
+              .doOnNext(symbols -> watchlistCache.put(userId, symbols));
+        });
+  }
+}
@@ -0,0 +1,19 @@
+package com.github.reneweb.stock;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Second cache tier shared by all instances behind the per-instance StockCache, so a symbol is
+ * fetched from Alpha Vantage once per bar across the cluster rather than once per instance.
+ */
+public interface SharedStockCache {
+
+  /** Returns null if the symbol is not cached or expired. */
+  Stock get(String key);
+
+  CompletableFuture<Stock> getAsync(String key);
+
+  /** Stores the stock without waiting for the write to complete. */
+  void put(String key, Stock stock, Instant expiresAt);
+}
@@ -1,14 +1,52 @@
 package com.github.reneweb.stock;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class Stock {
 
   @JsonProperty("Time Series (5min)")
-  private Map<String, StockEntry> stockHistory;
+  private StockSeries series = StockSeries.EMPTY;
 
+  @JsonIgnore private volatile StockSummary summary;
+
+  public Stock() {}
+
+  public Stock(StockSeries series) {
+    this.series = series;
+  }
+
+  public StockSeries getSeries() {
+    return series;
+  }
+
+  /** Computed on first use, stocks are replaced rather than changed when a new bar arrives. */
+  @JsonIgnore
+  public StockSummary getSummary() {
+    StockSummary result = summary;
+    if (result == null && !series.isEmpty()) {
+      result = StockSummary.of(series);
+      summary = result;
+    }
+    return result;
+  }
+
+  /** Bars keyed by their timestamp, newest first, as received from Alpha Vantage. */
+  @JsonIgnore
   public Map<String, StockEntry> getStockHistory() {
-    return stockHistory;
+    Map<String, StockEntry> history = new LinkedHashMap<>();
+    for (int i = series.size() - 1; i >= 0; i--) {
+      history.put(
+          series.formatTimestamp(i),
+          new StockEntry(
+              series.format(StockSeries.Field.OPEN, i),
+              series.format(StockSeries.Field.HIGH, i),
+              series.format(StockSeries.Field.LOW, i),
+              series.format(StockSeries.Field.CLOSE, i),
+              series.format(StockSeries.Field.VOLUME, i)));
+    }
+    return history;
   }
 }
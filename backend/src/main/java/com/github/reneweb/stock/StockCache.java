@@ -0,0 +1,292 @@
+package com.github.reneweb.stock;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Clock;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class StockCache {
+
+  private final StockClient stockClient;
+  private final ReactiveStockClient reactiveStockClient;
+  private final StockFetchCoalescer stockFetchCoalescer;
+  private final SymbolPopularity symbolPopularity;
+  private final AlphaVantageRateLimiter rateLimiter;
+  private final SymbolIndex symbolIndex;
+  private final SharedStockCache sharedStockCache;
+  private final PeerStockClient peerStockClient;
+  private final MeterRegistry meterRegistry;
+  private final Clock clock;
+  private final Cache<String, Stock> cache;
+
+  @Autowired
+  public StockCache(
+      StockClient stockClient,
+      ReactiveStockClient reactiveStockClient,
+      StockFetchCoalescer stockFetchCoalescer,
+      SymbolPopularity symbolPopularity,
+      AlphaVantageRateLimiter rateLimiter,
+      SymbolIndex symbolIndex,
+      Optional<SharedStockCache> sharedStockCache,
+      PeerStockClient peerStockClient,
+      MeterRegistry meterRegistry,
+      @Value("${stock.cache.maximum-size}") long maximumSize) {
+    this(
+        stockClient,
+        reactiveStockClient,
+        stockFetchCoalescer,
+        symbolPopularity,
+        rateLimiter,
+        symbolIndex,
+        sharedStockCache.orElse(null),
+        peerStockClient,
+        meterRegistry,
+        maximumSize,
+        Clock.systemUTC(),
+        Ticker.systemTicker());
+  }
+
+  StockCache(
+      StockClient stockClient,
+      ReactiveStockClient reactiveStockClient,
+      StockFetchCoalescer stockFetchCoalescer,
+      SymbolPopularity symbolPopularity,
+      AlphaVantageRateLimiter rateLimiter,
+      SymbolIndex symbolIndex,
+      SharedStockCache sharedStockCache,
+      PeerStockClient peerStockClient,
+      MeterRegistry meterRegistry,
+      long maximumSize,
+      Clock clock,
+      Ticker ticker) {
+    this.stockClient = stockClient;
+    this.reactiveStockClient = reactiveStockClient;
+    this.stockFetchCoalescer = stockFetchCoalescer;
+    this.symbolPopularity = symbolPopularity;
+    this.rateLimiter = rateLimiter;
+    this.symbolIndex = symbolIndex;
+    this.sharedStockCache = sharedStockCache;
+    this.peerStockClient = peerStockClient;
+    this.meterRegistry = meterRegistry;
+    this.clock = clock;
+    this.cache =
+        CaffeineCacheMetrics.monitor(
+            meterRegistry,
+            Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new UntilNextBar(clock))
+                .ticker(ticker)
+                .recordStats()
+                .build(),
+            "stocks");
+  }
+
+  public Stock get(String symbol) {
+    return get(symbol, FetchPriority.INTERACTIVE);
+  }
+
+  public Stock get(String symbol, FetchPriority priority) {
+    symbolPopularity.recordRequest(symbol);
+    String key = symbol.toUpperCase(Locale.ROOT);
+    Stock stock = cache.getIfPresent(key);
+    if (stock == null) {
+      stock = stockFetchCoalescer.fetch(flight(key, priority), () -> load(key, symbol, priority));
+    }
+    return stock;
+  }
+
+  public CompletableFuture<Stock> getAsync(String symbol) {
+    symbolPopularity.recordRequest(symbol);
+    String key = symbol.toUpperCase(Locale.ROOT);
+    Stock stock = cache.getIfPresent(key);
+    if (stock != null) {
+      return CompletableFuture.completedFuture(stock);
+    }
+    return stockFetchCoalescer.fetchAsync(
+        flight(key, FetchPriority.INTERACTIVE),
+        () -> loadAsync(key, symbol, FetchPriority.INTERACTIVE));
+  }
+
+  /**
+   * Fetches the symbol unless it is already cached. Returns whether this call went to Alpha
+   * Vantage, which is not the case if the owning node or the shared cache served the symbol.
+   */
+  public boolean prefetch(String symbol) {
+    String key = symbol.toUpperCase(Locale.ROOT);
+    if (cache.getIfPresent(key) != null) {
+      return false;
+    }
+    AtomicBoolean upstream = new AtomicBoolean();
+    stockFetchCoalescer.fetch(
+        flight(key, FetchPriority.BACKGROUND),
+        () -> load(key, symbol, FetchPriority.BACKGROUND, true, upstream));
+    return upstream.get();
+  }
+
+  /**
+   * Like get, but never forwards to another node. Serves the requests of nodes that consider this
+   * one the owner, even if this node's view of the cluster differs.
+   */
+  public Stock getOwned(String symbol, FetchPriority priority) {
+    String key = symbol.toUpperCase(Locale.ROOT);
+    Stock stock = cache.getIfPresent(key);
+    if (stock == null) {
+      stock =
+          stockFetchCoalescer.fetch(
+              flight(key, priority), () -> load(key, symbol, priority, false, new AtomicBoolean()));
+    }
+    return stock;
+  }
+
+  private CompletableFuture<Stock> loadAsync(String key, String symbol, FetchPriority priority) {
+    Stock stock = cache.getIfPresent(key);
+    if (stock != null) {
+      return CompletableFuture.completedFuture(stock);
+    }
+    return forwardAsync(key, priority)
+        .thenCompose(
+            forwarded ->
+                forwarded != null
+                    ? CompletableFuture.completedFuture(forwarded)
+                    : getSharedAsync(key))
+        .thenCompose(
+            found -> {
+              if (found != null) {
+                store(key, symbol, found);
+                return CompletableFuture.completedFuture(found);
+              }
+              return rateLimiter
+                  .acquireAsync(priority)
+                  .thenCompose(
+                      granted -> {
+                        Stock cached = cache.getIfPresent(key);
+                        if (cached != null) {
+                          return CompletableFuture.completedFuture(cached);
+                        }
+                        return reactiveStockClient
+                            .fetchStockBySymbol(symbol)
+                            .doOnNext(fetched -> share(key, fetched))
+                            .doOnNext(fetched -> store(key, symbol, fetched))
+                            .toFuture();
+                      });
+            });
+  }
+
+  private Stock load(String key, String symbol, FetchPriority priority) {
+    return load(key, symbol, priority, true, new AtomicBoolean());
+  }
+
+  private Stock load(
+      String key, String symbol, FetchPriority priority, boolean forward, AtomicBoolean upstream) {
+    // Another caller may have completed the fetch between the cache lookup and joining the flight
+    Stock stock = cache.getIfPresent(key);
+    if (stock == null) {
+      stock = forward ? forward(key, priority) : null;
+      if (stock == null) {
+        stock = getShared(key);
+      }
+      if (stock == null) {
+        rateLimiter.acquire(priority);
+        // A flight of another priority may have fetched the symbol while this one was waiting
+        stock = cache.getIfPresent(key);
+        if (stock != null) {
+          return stock;
+        }
+        upstream.set(true);
+        stock = stockClient.fetchStockBySymbol(symbol);
+        share(key, stock);
+      }
+      store(key, symbol, stock);
+    }
+    return stock;
+  }
+
+  /**
+   * Callers only share a flight of the same priority, so an interactive request never inherits a
+   * background fetch's place in the rate limiter queue.
+   */
+  private static String flight(String key, FetchPriority priority) {
+    return key + "@" + priority.name();
+  }
+
+  private Stock forward(String key, FetchPriority priority) {
+    return peerStockClient == null ? null : peerStockClient.fetchFromOwner(key, priority).block();
+  }
+
+  private CompletableFuture<Stock> forwardAsync(String key, FetchPriority priority) {
+    if (peerStockClient == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return peerStockClient.fetchFromOwner(key, priority).toFuture();
+  }
+
+  private Stock getShared(String key) {
+    if (sharedStockCache == null) {
+      return null;
+    }
+    return recordShared(sharedStockCache.get(key));
+  }
+
+  private CompletableFuture<Stock> getSharedAsync(String key) {
+    if (sharedStockCache == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return sharedStockCache.getAsync(key).thenApply(this::recordShared);
+  }
+
+  private Stock recordShared(Stock stock) {
+    meterRegistry
+        .counter("stock.sharedcache", "outcome", stock == null ? "miss" : "hit")
+        .increment();
+    return stock;
+  }
+
+  private void share(String key, Stock stock) {
+    if (sharedStockCache != null && !stock.getSeries().isEmpty()) {
+      sharedStockCache.put(key, stock, BarSchedule.nextBoundary(clock.instant()));
+    }
+  }
+
+  /** A stock without bars is served, but neither cached nor taken as proof the symbol exists. */
+  private void store(String key, String symbol, Stock stock) {
+    if (stock.getSeries().isEmpty()) {
+      return;
+    }
+    cache.put(key, stock);
+    symbolIndex.add(symbol);
+  }
+
+  private static class UntilNextBar implements Expiry<String, Stock> {
+    private final Clock clock;
+
+    UntilNextBar(Clock clock) {
+      this.clock = clock;
+    }
+
+    @Override
+    public long expireAfterCreate(String key, Stock stock, long currentTime) {
+      return BarSchedule.untilNextBoundary(clock).toNanos();
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, Stock stock, long currentTime, long currentDuration) {
+      return BarSchedule.untilNextBoundary(clock).toNanos();
+    }
+
+    @Override
+    public long expireAfterRead(String key, Stock stock, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -1,16 +1,17 @@
 package com.github.reneweb.stock;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.retry.annotation.Retry;
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.server.ResponseStatusException;
@@ -22,39 +23,45 @@ public class StockClient {
 
   private final String apiKey;
   private final RestTemplate restTemplate;
+  private final AlphaVantageParser parser;
 
   @Autowired
-  public StockClient(@Value("${ALPHAVANTAGE_APIKEY}") String apiKey, RestTemplate restTemplate) {
+  public StockClient(
+      @Value("${ALPHAVANTAGE_APIKEY}") String apiKey,
+      RestTemplate restTemplate,
+      AlphaVantageParser parser) {
     this.apiKey = apiKey;
     this.restTemplate = restTemplate;
+    this.parser = parser;
   }
 
   @CircuitBreaker(name = "StockClient")
   @Retry(name = "StockClient")
   public Stock fetchStockBySymbol(String symbol) {
-    HttpHeaders headers = new HttpHeaders();
-    headers.setContentType(MediaType.APPLICATION_JSON);
-
-    HttpEntity<?> request = new HttpEntity<>(headers);
-
-    ResponseEntity<Stock> response =
-        restTemplate.exchange(
-            URL,
-            HttpMethod.GET,
-            request,
-            Stock.class,
-            Map.of(
-                "apikey", apiKey,
-                "symbol", symbol));
+    return restTemplate.execute(
+        URL,
+        HttpMethod.GET,
+        request -> request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON)),
+        this::extractStock,
+        Map.of(
+            "apikey", apiKey,
+            "symbol", symbol));
+  }
 
-    if (response.getStatusCode().value() == 400) {
+  private Stock extractStock(ClientHttpResponse response) throws IOException {
+    if (response.getRawStatusCode() == 400) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid stock symbol");
     } else if (response.getStatusCode().is4xxClientError()
         || response.getStatusCode().is5xxServerError()) {
       throw new ResponseStatusException(
           HttpStatus.INTERNAL_SERVER_ERROR, "Error while retrieving stock data");
-    } else {
-      return response.getBody();
+    }
+
+    try {
+      return parser.parse(response.getBody());
+    } catch (JsonProcessingException e) {
+      throw new ResponseStatusException(
+          HttpStatus.INTERNAL_SERVER_ERROR, "Error while retrieving stock data", e);
     }
   }
 }
@@ -1,54 +1,232 @@
 package com.github.reneweb.stock;
 
+import java.io.IOException;
+import java.time.Clock;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 public class StockController {
 
+  private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+  private static final Logger LOGGER = LoggerFactory.getLogger(StockController.class);
+
   private final StockService stockService;
+  private final StockPayloadCache stockPayloadCache;
+  private final QuoteHub quoteHub;
+  private final long streamTimeoutMillis;
+  private final long subscriptionTimeoutMillis;
+  private final Clock clock;
 
   @Autowired
-  public StockController(StockService stockService) {
+  public StockController(
+      StockService stockService,
+      StockPayloadCache stockPayloadCache,
+      QuoteHub quoteHub,
+      @Value("${stock.fetch.timeout-ms}") long fetchTimeoutMillis,
+      @Value("${stock.subscriptions.timeout-ms}") long subscriptionTimeoutMillis) {
+    this(
+        stockService,
+        stockPayloadCache,
+        quoteHub,
+        fetchTimeoutMillis,
+        subscriptionTimeoutMillis,
+        Clock.systemUTC());
+  }
+
+  StockController(
+      StockService stockService,
+      StockPayloadCache stockPayloadCache,
+      QuoteHub quoteHub,
+      long fetchTimeoutMillis,
+      long subscriptionTimeoutMillis,
+      Clock clock) {
     this.stockService = stockService;
+    this.stockPayloadCache = stockPayloadCache;
+    this.quoteHub = quoteHub;
+    this.streamTimeoutMillis = fetchTimeoutMillis + 1000;
+    this.subscriptionTimeoutMillis = subscriptionTimeoutMillis;
+    this.clock = clock;
   }
 
+  /**
+   * Unprojected stocks are written from the payload cache, gzipped if the client accepts it, so hot
+   * symbols are serialized and compressed once per bar instead of once per request.
+   */
   @GetMapping("/stocks/{symbol}")
-  public Stock getStock(@PathVariable String symbol) {
-    return stockService.getStock(symbol);
+  public ResponseEntity<?> getStock(
+      @PathVariable String symbol,
+      @RequestParam(required = false) String from,
+      @RequestParam(required = false) String to,
+      @RequestParam(required = false) Integer last,
+      @RequestParam(required = false) List<String> fields,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    StockProjection projection = StockProjection.of(from, to, last, fields);
+    Stock stock = stockService.getStock(symbol);
+    Stock projected = projection.apply(stock);
+    String eTag = HttpCaching.eTag(symbol, stock, from, to, last, fields);
+    ResponseEntity.BodyBuilder response =
+        ResponseEntity.ok().cacheControl(HttpCaching.untilNextBar(clock, true));
+    if (projected != stock) {
+      return response.eTag(eTag).body(projected);
+    }
+
+    StockPayloadCache.Payload payload = stockPayloadCache.get(symbol, stock);
+    response.contentType(MediaType.APPLICATION_JSON).varyBy(HttpHeaders.ACCEPT_ENCODING);
+    if (HttpCaching.acceptsGzip(acceptEncoding)) {
+      return response
+          .eTag(HttpCaching.gzipETag(eTag))
+          .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+          .body(payload.getGzip());
+    }
+    return response.eTag(eTag).body(payload.getJson());
+  }
+
+  @GetMapping(value = "/stocks", params = "symbols")
+  public Map<String, StockResult> getStocks(@RequestParam List<String> symbols) {
+    return stockService.getStocks(symbols);
   }
 
   @GetMapping("/watchlist")
-  public Set<Stock> getWatchlist(@RequestHeader("Authorization") String authorizationHeader) {
-    return stockService.getWatchlist(getTokenFromHeader(authorizationHeader));
+  public ResponseEntity<Set<Stock>> getWatchlist(
+      @RequestHeader("Authorization") String authorizationHeader) {
+    Map<String, Stock> stocks =
+        stockService.getWatchlistStocks(AuthorizationHeaders.getToken(authorizationHeader));
+    return ResponseEntity.ok()
+        .eTag(HttpCaching.eTag(stocks))
+        .cacheControl(HttpCaching.untilNextBar(clock, false))
+        .body(new HashSet<>(stocks.values()));
+  }
+
+  @GetMapping("/watchlist/summary")
+  public ResponseEntity<Map<String, StockSummary>> getWatchlistSummary(
+      @RequestHeader("Authorization") String authorizationHeader) {
+    Map<String, Stock> stocks =
+        stockService.getWatchlistStocks(AuthorizationHeaders.getToken(authorizationHeader));
+    return ResponseEntity.ok()
+        .eTag(HttpCaching.eTag(stocks))
+        .cacheControl(HttpCaching.untilNextBar(clock, false))
+        .body(StockSummary.bySymbol(stocks));
+  }
+
+  @GetMapping(value = "/watchlist", produces = APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<ResponseBodyEmitter> streamWatchlist(
+      @RequestHeader("Authorization") String authorizationHeader) {
+    ResponseBodyEmitter emitter = new ResponseBodyEmitter(streamTimeoutMillis);
+    stream(
+        emitter,
+        authorizationHeader,
+        quote -> {
+          emitter.send(quote, MediaType.APPLICATION_JSON);
+          emitter.send("\n", MediaType.TEXT_PLAIN);
+        });
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+        .body(emitter);
+  }
+
+  @GetMapping(value = "/watchlist", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamWatchlistEvents(
+      @RequestHeader("Authorization") String authorizationHeader) {
+    SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+    stream(
+        emitter,
+        authorizationHeader,
+        quote ->
+            emitter.send(
+                SseEmitter.event()
+                    .name("quote")
+                    .id(quote.getSymbol())
+                    .data(quote, MediaType.APPLICATION_JSON)));
+    return emitter;
+  }
+
+  /** Live quotes of the symbols: a "quote" event per symbol first, then "delta" events. */
+  @GetMapping(value = "/subscriptions/stocks", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter subscribeStocks(@RequestParam List<String> symbols) {
+    return subscribe(stockService.normalizeSymbols(symbols));
+  }
+
+  /** Live quotes of the watchlist symbols at the time of subscribing. */
+  @GetMapping(value = "/subscriptions/watchlist", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter subscribeWatchlist(@RequestHeader("Authorization") String authorizationHeader) {
+    return subscribe(
+        stockService.getWatchlistSymbols(AuthorizationHeaders.getToken(authorizationHeader)));
   }
 
   @PostMapping("/watchlist/{symbol}")
   public void addStockToWatchlist(
       @RequestHeader("Authorization") String authorizationHeader, @PathVariable String symbol) {
-    stockService.addStockToWatchlist(getTokenFromHeader(authorizationHeader), symbol);
+    stockService.addStockToWatchlist(AuthorizationHeaders.getToken(authorizationHeader), symbol);
   }
 
   @DeleteMapping("/watchlist/{symbol}")
   public void deleteStockFromWatchlist(
       @RequestHeader("Authorization") String authorizationHeader, @PathVariable String symbol) {
-    stockService.removeStockFromWatchlist(getTokenFromHeader(authorizationHeader), symbol);
+    stockService.removeStockFromWatchlist(
+        AuthorizationHeaders.getToken(authorizationHeader), symbol);
   }
 
-  private String getTokenFromHeader(String authorizationHeader) {
-    String[] authHeaderSplit = authorizationHeader.split(" ");
-    if (authHeaderSplit.length < 2) {
-      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid Authorization Header");
-    }
+  private SseEmitter subscribe(Collection<String> symbols) {
+    SseEmitter emitter = new SseEmitter(subscriptionTimeoutMillis);
+    QuoteHub.Subscription subscription =
+        quoteHub.subscribe(
+            symbols,
+            new QuoteHub.Sink() {
+              @Override
+              public void send(String event, String symbol, String json) throws IOException {
+                emitter.send(
+                    SseEmitter.event()
+                        .name(event)
+                        .id(symbol)
+                        .data(json, MediaType.APPLICATION_JSON));
+              }
+
+              @Override
+              public void close() {
+                emitter.complete();
+              }
+            });
+    emitter.onCompletion(() -> quoteHub.unsubscribe(subscription));
+    emitter.onTimeout(() -> quoteHub.unsubscribe(subscription));
+    emitter.onError(error -> quoteHub.unsubscribe(subscription));
+    return emitter;
+  }
+
+  private void stream(ResponseBodyEmitter emitter, String authorizationHeader, QuoteWriter writer) {
+    stockService
+        .streamWatchlist(
+            AuthorizationHeaders.getToken(authorizationHeader),
+            quote -> {
+              try {
+                writer.write(quote);
+              } catch (IOException | IllegalStateException e) {
+                LOGGER.debug("Could not stream quote for symbol {}", quote.getSymbol(), e);
+              }
+            })
+        .whenComplete((result, error) -> emitter.complete());
+  }
 
-    return authHeaderSplit[1];
+  private interface QuoteWriter {
+    void write(SymbolQuote quote) throws IOException;
   }
 }
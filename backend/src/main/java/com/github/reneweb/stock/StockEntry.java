@@ -19,6 +19,16 @@ public class StockEntry {
   @JsonProperty("5. volume")
   private String volume;
 
+  public StockEntry() {}
+
+  public StockEntry(String open, String high, String low, String close, String volume) {
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.close = close;
+    this.volume = volume;
+  }
+
   public String getOpen() {
     return open;
   }
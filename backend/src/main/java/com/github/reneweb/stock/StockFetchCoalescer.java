@@ -0,0 +1,96 @@
+package com.github.reneweb.stock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lets concurrent callers for the same symbol share a single in-flight fetch instead of each
+ * issuing their own upstream call.
+ */
+@Component
+public class StockFetchCoalescer {
+
+  private final ConcurrentMap<String, CompletableFuture<Stock>> inFlight =
+      new ConcurrentHashMap<>();
+  private final Counter issued;
+  private final Counter coalesced;
+
+  @Autowired
+  public StockFetchCoalescer(MeterRegistry meterRegistry) {
+    this.issued = meterRegistry.counter("stock.upstream", "call", "issued");
+    this.coalesced = meterRegistry.counter("stock.upstream", "call", "coalesced");
+  }
+
+  public Stock fetch(String key, Supplier<Stock> loader) {
+    CompletableFuture<Stock> future = new CompletableFuture<>();
+    CompletableFuture<Stock> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      coalesced.increment();
+      return await(existing);
+    }
+
+    issued.increment();
+    try {
+      Stock stock = loader.get();
+      future.complete(stock);
+      return stock;
+    } catch (RuntimeException | Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  public CompletableFuture<Stock> fetchAsync(
+      String key, Supplier<CompletableFuture<Stock>> loader) {
+    CompletableFuture<Stock> future = new CompletableFuture<>();
+    CompletableFuture<Stock> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      coalesced.increment();
+      return existing.copy();
+    }
+
+    issued.increment();
+    CompletableFuture<Stock> loading;
+    try {
+      loading = loader.get();
+    } catch (RuntimeException | Error e) {
+      loading = CompletableFuture.failedFuture(e);
+    }
+    loading.whenComplete(
+        (stock, error) -> {
+          if (error != null) {
+            future.completeExceptionally(unwrap(error));
+          } else {
+            future.complete(stock);
+          }
+          inFlight.remove(key, future);
+        });
+    return future.copy();
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    return error instanceof CompletionException && error.getCause() != null
+        ? error.getCause()
+        : error;
+  }
+
+  private static Stock await(CompletableFuture<Stock> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
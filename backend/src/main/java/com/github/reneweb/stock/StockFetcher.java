@@ -0,0 +1,221 @@
+package com.github.reneweb.stock;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Fetches several symbols concurrently. Cache misses still go through the StockClient proxy, so
+ * circuit breaker and retry apply per symbol. Failed or timed out symbols are left out.
+ */
+@Component
+public class StockFetcher {
+  private static final Logger LOGGER = LoggerFactory.getLogger(StockFetcher.class);
+
+  private final StockCache stockCache;
+  private final MeterRegistry meterRegistry;
+  private final ExecutorService executor;
+  private final long timeoutMillis;
+
+  @Autowired
+  public StockFetcher(
+      StockCache stockCache,
+      MeterRegistry meterRegistry,
+      @Value("${stock.fetch.threads}") int threads,
+      @Value("${stock.fetch.queue-capacity}") int queueCapacity,
+      @Value("${stock.fetch.timeout-ms}") long timeoutMillis) {
+    this.stockCache = stockCache;
+    this.meterRegistry = meterRegistry;
+    this.timeoutMillis = timeoutMillis;
+    this.executor =
+        ExecutorServiceMetrics.monitor(
+            meterRegistry,
+            new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new DaemonThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy()),
+            "stock.fetch");
+  }
+
+  /**
+   * Symbols that do not fit into the queue fail right away, rather than running on the calling
+   * thread past the deadline.
+   */
+  public Map<String, CompletableFuture<Stock>> submitAll(Collection<String> symbols) {
+    Map<String, CompletableFuture<Stock>> futures = new LinkedHashMap<>();
+    for (String symbol : symbols) {
+      CompletableFuture<Stock> future;
+      try {
+        future = CompletableFuture.supplyAsync(() -> stockCache.get(symbol), executor);
+      } catch (RejectedExecutionException e) {
+        future = new CompletableFuture<>();
+        future.completeExceptionally(
+            new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many stock fetches"));
+      }
+      futures.put(symbol, future);
+    }
+    return futures;
+  }
+
+  public Map<String, Stock> fetchAll(Collection<String> symbols) {
+    Map<String, Stock> stocks = new HashMap<>();
+    fetchResults(symbols)
+        .forEach(
+            (symbol, result) -> {
+              if (result.getStock() != null) {
+                stocks.put(symbol, result.getStock());
+              }
+            });
+    return stocks;
+  }
+
+  /** Like fetchAll, but failed and timed out symbols are kept with the reason, in input order. */
+  public Map<String, StockResult> fetchResults(Collection<String> symbols) {
+    Map<String, CompletableFuture<Stock>> futures = submitAll(symbols);
+
+    try {
+      CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+          .get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException | ExecutionException e) {
+      // Collect whatever completed successfully below
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    Map<String, StockResult> results = new LinkedHashMap<>();
+    futures.forEach(
+        (symbol, future) -> {
+          if (future.isDone() && !future.isCompletedExceptionally()) {
+            results.put(symbol, StockResult.success(future.join()));
+            meterRegistry.counter("stock.fetch", "outcome", "success").increment();
+          } else if (future.isDone()) {
+            LOGGER.warn("Fetching stock data for symbol {} failed", symbol);
+            meterRegistry.counter("stock.fetch", "outcome", "failure").increment();
+            results.put(symbol, failure(future));
+          } else {
+            LOGGER.warn("Fetching stock data for symbol {} timed out", symbol);
+            meterRegistry.counter("stock.fetch", "outcome", "timeout").increment();
+            future.cancel(false);
+            results.put(
+                symbol,
+                StockResult.failure(HttpStatus.GATEWAY_TIMEOUT, "Fetching stock timed out"));
+          }
+        });
+    return results;
+  }
+
+  private static StockResult failure(CompletableFuture<Stock> future) {
+    try {
+      future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof ResponseStatusException) {
+        ResponseStatusException cause = (ResponseStatusException) e.getCause();
+        return StockResult.failure(cause.getStatus(), cause.getReason());
+      }
+    } catch (CancellationException e) {
+      // Reported like any other failure below
+    }
+    return StockResult.failure(HttpStatus.INTERNAL_SERVER_ERROR, "Could not fetch stock");
+  }
+
+  /**
+   * Passes every successfully fetched symbol to the consumer as soon as it arrives. The returned
+   * future completes once all symbols are done or the deadline passed; the consumer is not called
+   * after that.
+   */
+  public CompletableFuture<Void> fetchEach(
+      Collection<String> symbols, Consumer<SymbolQuote> consumer) {
+    Object lock = new Object();
+    AtomicBoolean closed = new AtomicBoolean();
+    Map<String, CompletableFuture<Stock>> futures = submitAll(symbols);
+
+    CompletableFuture<?>[] emitted =
+        futures.entrySet().stream()
+            .map(
+                entry ->
+                    entry
+                        .getValue()
+                        .handle(
+                            (stock, error) -> {
+                              synchronized (lock) {
+                                if (error != null) {
+                                  LOGGER.warn(
+                                      "Fetching stock data for symbol {} failed", entry.getKey());
+                                  meterRegistry
+                                      .counter("stock.fetch", "outcome", "failure")
+                                      .increment();
+                                } else if (!closed.get()) {
+                                  meterRegistry
+                                      .counter("stock.fetch", "outcome", "success")
+                                      .increment();
+                                  consumer.accept(new SymbolQuote(entry.getKey(), stock));
+                                }
+                              }
+                              return null;
+                            }))
+            .toArray(CompletableFuture[]::new);
+
+    return CompletableFuture.allOf(emitted)
+        .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+        .handle(
+            (result, error) -> {
+              synchronized (lock) {
+                closed.set(true);
+              }
+              futures.forEach(
+                  (symbol, future) -> {
+                    if (!future.isDone()) {
+                      LOGGER.warn("Fetching stock data for symbol {} timed out", symbol);
+                      meterRegistry.counter("stock.fetch", "outcome", "timeout").increment();
+                      future.cancel(false);
+                    }
+                  });
+              return null;
+            });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private static class DaemonThreadFactory implements ThreadFactory {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "stock-fetch-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.github.reneweb.stock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serialized and gzipped JSON of the most requested stocks. A cached stock is replaced rather than
+ * changed when a new bar arrives, so a payload is reused as long as it was built from the same
+ * instance, i.e. it is serialized and compressed once per symbol and bar. Caffeine's frequency
+ * based admission keeps the hot symbols once the cache is full.
+ */
+@Component
+public class StockPayloadCache {
+
+  private final ObjectMapper objectMapper;
+  private final Cache<String, Payload> cache;
+
+  @Autowired
+  public StockPayloadCache(
+      ObjectMapper objectMapper,
+      MeterRegistry meterRegistry,
+      @Value("${stock.payload-cache.maximum-size}") long maximumSize) {
+    this.objectMapper = objectMapper;
+    this.cache =
+        CaffeineCacheMetrics.monitor(
+            meterRegistry,
+            Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build(),
+            "stockPayloads");
+  }
+
+  public Payload get(String symbol, Stock stock) {
+    if (stock.getSeries().isEmpty()) {
+      return serialize(stock);
+    }
+    // Keyed like StockCache, so differently cased paths share one payload
+    String normalized = symbol.toUpperCase(Locale.ROOT);
+    Payload payload = cache.getIfPresent(normalized);
+    if (payload != null && payload.stock == stock) {
+      return payload;
+    }
+    return cache
+        .asMap()
+        .compute(
+            normalized,
+            (key, current) ->
+                current != null && current.stock == stock ? current : serialize(stock));
+  }
+
+  private Payload serialize(Stock stock) {
+    try {
+      byte[] json = objectMapper.writeValueAsBytes(stock);
+      ByteArrayOutputStream gzip = new ByteArrayOutputStream(json.length / 4);
+      try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+        out.write(json);
+      }
+      return new Payload(stock, json, gzip.toByteArray());
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize stock", e);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public static final class Payload {
+    private final Stock stock;
+    private final byte[] json;
+    private final byte[] gzip;
+
+    private Payload(Stock stock, byte[] json, byte[] gzip) {
+      this.stock = stock;
+      this.json = json;
+      this.gzip = gzip;
+    }
+
+    public byte[] getJson() {
+      return json;
+    }
+
+    public byte[] getGzip() {
+      return gzip;
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.github.reneweb.stock;
+
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Restricts a stock to a time range, the newest bars and a subset of the fields. Times use the
+ * format of the series keys, e.g. "2020-05-01 16:00:00" US/Eastern.
+ */
+public final class StockProjection {
+
+  private final long from;
+  private final long to;
+  private final Integer last;
+  private final Set<StockSeries.Field> fields;
+
+  private StockProjection(long from, long to, Integer last, Set<StockSeries.Field> fields) {
+    this.from = from;
+    this.to = to;
+    this.last = last;
+    this.fields = fields;
+  }
+
+  /** Parses the query parameters, all of which are optional. */
+  public static StockProjection of(String from, String to, Integer last, List<String> fields) {
+    long fromTimestamp = from == null ? Long.MIN_VALUE : parseTime(from);
+    long toTimestamp = to == null ? Long.MAX_VALUE : parseTime(to);
+    if (fromTimestamp > toTimestamp) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid time range");
+    }
+    if (last != null && last < 1) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid number of bars");
+    }
+    return new StockProjection(fromTimestamp, toTimestamp, last, parseFields(fields));
+  }
+
+  public Stock apply(Stock stock) {
+    StockSeries series = stock.getSeries();
+    StockSeries projected = series.range(from, to);
+    if (last != null) {
+      projected = projected.last(last);
+    }
+    if (fields != null) {
+      projected = projected.withFields(fields);
+    }
+    return projected == series ? stock : new Stock(projected);
+  }
+
+  private static long parseTime(String time) {
+    try {
+      return StockSeries.parseTimestamp(time);
+    } catch (DateTimeParseException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid time range", e);
+    }
+  }
+
+  private static Set<StockSeries.Field> parseFields(List<String> names) {
+    if (names == null || names.isEmpty()) {
+      return null;
+    }
+    Set<StockSeries.Field> fields = EnumSet.noneOf(StockSeries.Field.class);
+    for (String name : names) {
+      fields.add(
+          StockSeries.Field.fromParameterName(name.trim())
+              .orElseThrow(
+                  () -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid field")));
+    }
+    return fields;
+  }
+}
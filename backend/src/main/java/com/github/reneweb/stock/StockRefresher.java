@@ -0,0 +1,65 @@
+package com.github.reneweb.stock;
+
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pre-warms the stock cache for the most popular symbols shortly after every bar boundary, so user
+ * requests are served from the cache. Upstream calls are paced to stay within the configured
+ * budget.
+ */
+@Component
+public class StockRefresher {
+  private static final Logger LOGGER = LoggerFactory.getLogger(StockRefresher.class);
+
+  private final StockCache stockCache;
+  private final SymbolPopularity symbolPopularity;
+  private final boolean enabled;
+  private final int maxSymbols;
+  private final long pauseMillis;
+
+  @Autowired
+  public StockRefresher(
+      StockCache stockCache,
+      SymbolPopularity symbolPopularity,
+      @Value("${stock.refresh.enabled}") boolean enabled,
+      @Value("${stock.refresh.max-symbols}") int maxSymbols,
+      @Value("${stock.refresh.max-calls-per-minute}") int maxCallsPerMinute) {
+    if (maxCallsPerMinute <= 0) {
+      throw new IllegalStateException(
+          "stock.refresh.max-calls-per-minute must be positive, "
+              + "set stock.refresh.enabled=false to disable the refresh");
+    }
+    this.stockCache = stockCache;
+    this.symbolPopularity = symbolPopularity;
+    this.enabled = enabled;
+    this.maxSymbols = maxSymbols;
+    this.pauseMillis = 60_000L / maxCallsPerMinute;
+  }
+
+  @Scheduled(cron = "${stock.refresh.cron}")
+  public void refresh() {
+    if (!enabled) {
+      return;
+    }
+
+    List<String> symbols = symbolPopularity.top(maxSymbols);
+    for (String symbol : symbols) {
+      try {
+        if (stockCache.prefetch(symbol)) {
+          Thread.sleep(pauseMillis);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        LOGGER.warn("Refreshing stock data for symbol {} failed", symbol, e);
+      }
+    }
+  }
+}
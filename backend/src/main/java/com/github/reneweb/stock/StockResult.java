@@ -0,0 +1,38 @@
+package com.github.reneweb.stock;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.http.HttpStatus;
+
+/** Either the stock of a symbol in a batch request or the status and reason why it failed. */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StockResult {
+  private final Stock stock;
+  private final Integer status;
+  private final String error;
+
+  private StockResult(Stock stock, Integer status, String error) {
+    this.stock = stock;
+    this.status = status;
+    this.error = error;
+  }
+
+  public static StockResult success(Stock stock) {
+    return new StockResult(stock, null, null);
+  }
+
+  public static StockResult failure(HttpStatus status, String error) {
+    return new StockResult(null, status.value(), error);
+  }
+
+  public Stock getStock() {
+    return stock;
+  }
+
+  public Integer getStatus() {
+    return status;
+  }
+
+  public String getError() {
+    return error;
+  }
+}
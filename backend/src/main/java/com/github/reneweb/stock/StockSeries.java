@@ -0,0 +1,511 @@
+package com.github.reneweb.stock;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+
+/**
+ * Intraday bars stored column-wise in primitive arrays, sorted by time. Serialized in the same
+ * format as the Alpha Vantage time series, a map from timestamp to strings, newest first. Prices
+ * are written with the number of decimals they were received with.
+ */
+@JsonSerialize(using = StockSeries.Serializer.class)
+@JsonDeserialize(using = StockSeries.Deserializer.class)
+public final class StockSeries {
+  /** Time zone of the Alpha Vantage timestamps. */
+  public static final ZoneId ZONE = ZoneId.of("America/New_York");
+
+  public static final StockSeries EMPTY = builder().build();
+
+  private static final DateTimeFormatter TIMESTAMP_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+  // Integers with up to 15 digits and powers of ten up to 1e15 are exact doubles
+  private static final int MAX_EXACT_DIGITS = 15;
+  private static final double[] POWERS_OF_TEN =
+      DoubleStream.iterate(1, power -> power * 10).limit(MAX_EXACT_DIGITS + 1).toArray();
+
+  private final long[] timestamps;
+  private final double[] open;
+  private final double[] high;
+  private final double[] low;
+  private final double[] close;
+  private final long[] volume;
+  private final int priceScale;
+  private final Set<Field> fields;
+
+  private StockSeries(
+      long[] timestamps,
+      double[] open,
+      double[] high,
+      double[] low,
+      double[] close,
+      long[] volume,
+      int priceScale,
+      Set<Field> fields) {
+    this.timestamps = timestamps;
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.close = close;
+    this.volume = volume;
+    this.priceScale = priceScale;
+    this.fields = fields;
+  }
+
+  /** The values of a bar, named like the query parameter and the JSON field. */
+  public enum Field {
+    OPEN("open", "1. open"),
+    HIGH("high", "2. high"),
+    LOW("low", "3. low"),
+    CLOSE("close", "4. close"),
+    VOLUME("volume", "5. volume");
+
+    private static final Set<Field> ALL = Collections.unmodifiableSet(EnumSet.allOf(Field.class));
+
+    private final String parameterName;
+    private final String jsonName;
+
+    Field(String parameterName, String jsonName) {
+      this.parameterName = parameterName;
+      this.jsonName = jsonName;
+    }
+
+    public String getParameterName() {
+      return parameterName;
+    }
+
+    public String getJsonName() {
+      return jsonName;
+    }
+
+    public static Optional<Field> fromParameterName(String parameterName) {
+      return Arrays.stream(values())
+          .filter(field -> field.parameterName.equalsIgnoreCase(parameterName))
+          .findFirst();
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public int size() {
+    return timestamps.length;
+  }
+
+  public boolean isEmpty() {
+    return timestamps.length == 0;
+  }
+
+  /** Epoch seconds at which the bar starts. */
+  public long getTimestamp(int index) {
+    return timestamps[index];
+  }
+
+  public double getOpen(int index) {
+    return open[index];
+  }
+
+  public double getHigh(int index) {
+    return high[index];
+  }
+
+  public double getLow(int index) {
+    return low[index];
+  }
+
+  public double getClose(int index) {
+    return close[index];
+  }
+
+  public long getVolume(int index) {
+    return volume[index];
+  }
+
+  public int getPriceScale() {
+    return priceScale;
+  }
+
+  /** The fields that are serialized. */
+  public Set<Field> getFields() {
+    return fields;
+  }
+
+  public boolean hasField(Field field) {
+    return fields.contains(field);
+  }
+
+  /** The bars from and to the given epoch seconds, both inclusive. */
+  public StockSeries range(long from, long to) {
+    return slice(lowerBound(from), lowerBound(to == Long.MAX_VALUE ? to : to + 1));
+  }
+
+  /** The newest bars, at most count. */
+  public StockSeries last(int count) {
+    return slice(Math.max(0, size() - count), size());
+  }
+
+  /** The same bars, serialized with the given fields only. */
+  public StockSeries withFields(Set<Field> fields) {
+    if (fields.equals(this.fields)) {
+      return this;
+    }
+    return new StockSeries(
+        timestamps,
+        open,
+        high,
+        low,
+        close,
+        volume,
+        priceScale,
+        Collections.unmodifiableSet(EnumSet.copyOf(fields)));
+  }
+
+  private StockSeries slice(int from, int to) {
+    if (from == 0 && to == size()) {
+      return this;
+    }
+    return new StockSeries(
+        Arrays.copyOfRange(timestamps, from, to),
+        Arrays.copyOfRange(open, from, to),
+        Arrays.copyOfRange(high, from, to),
+        Arrays.copyOfRange(low, from, to),
+        Arrays.copyOfRange(close, from, to),
+        Arrays.copyOfRange(volume, from, to),
+        priceScale,
+        fields);
+  }
+
+  /** Index of the first bar at or after the timestamp. */
+  private int lowerBound(long timestamp) {
+    int index = Arrays.binarySearch(timestamps, timestamp);
+    if (index < 0) {
+      return -index - 1;
+    }
+    while (index > 0 && timestamps[index - 1] == timestamp) {
+      index--;
+    }
+    return index;
+  }
+
+  public String formatTimestamp(int index) {
+    return TIMESTAMP_FORMAT.format(
+        LocalDateTime.ofInstant(Instant.ofEpochSecond(timestamps[index]), ZONE));
+  }
+
+  /** The value of the field at the index as it is serialized, null if it is not selected. */
+  public String format(Field field, int index) {
+    if (!fields.contains(field)) {
+      return null;
+    }
+    switch (field) {
+      case OPEN:
+        return formatPrice(open[index]);
+      case HIGH:
+        return formatPrice(high[index]);
+      case LOW:
+        return formatPrice(low[index]);
+      case CLOSE:
+        return formatPrice(close[index]);
+      default:
+        return Long.toString(volume[index]);
+    }
+  }
+
+  public String formatPrice(double price) {
+    return BigDecimal.valueOf(price).setScale(priceScale, RoundingMode.HALF_UP).toPlainString();
+  }
+
+  public static long parseTimestamp(String timestamp) {
+    return LocalDateTime.parse(timestamp, TIMESTAMP_FORMAT).atZone(ZONE).toEpochSecond();
+  }
+
+  public static final class Builder {
+    private long[] timestamps = new long[128];
+    private double[] open = new double[128];
+    private double[] high = new double[128];
+    private double[] low = new double[128];
+    private double[] close = new double[128];
+    private long[] volume = new long[128];
+    private int size;
+    private int priceScale;
+
+    private Builder() {}
+
+    public Builder add(
+        long timestamp, double open, double high, double low, double close, long volume) {
+      if (size == timestamps.length) {
+        int capacity = size * 2;
+        this.timestamps = Arrays.copyOf(this.timestamps, capacity);
+        this.open = Arrays.copyOf(this.open, capacity);
+        this.high = Arrays.copyOf(this.high, capacity);
+        this.low = Arrays.copyOf(this.low, capacity);
+        this.close = Arrays.copyOf(this.close, capacity);
+        this.volume = Arrays.copyOf(this.volume, capacity);
+      }
+      this.timestamps[size] = timestamp;
+      this.open[size] = open;
+      this.high[size] = high;
+      this.low[size] = low;
+      this.close[size] = close;
+      this.volume[size] = volume;
+      size++;
+      return this;
+    }
+
+    /** Raises the number of decimals prices are written with. */
+    public Builder priceScale(int priceScale) {
+      this.priceScale = Math.max(this.priceScale, priceScale);
+      return this;
+    }
+
+    public StockSeries build() {
+      int[] order = order();
+      long[] sortedTimestamps = new long[size];
+      double[] sortedOpen = new double[size];
+      double[] sortedHigh = new double[size];
+      double[] sortedLow = new double[size];
+      double[] sortedClose = new double[size];
+      long[] sortedVolume = new long[size];
+      for (int i = 0; i < size; i++) {
+        sortedTimestamps[i] = timestamps[order[i]];
+        sortedOpen[i] = open[order[i]];
+        sortedHigh[i] = high[order[i]];
+        sortedLow[i] = low[order[i]];
+        sortedClose[i] = close[order[i]];
+        sortedVolume[i] = volume[order[i]];
+      }
+      return new StockSeries(
+          sortedTimestamps,
+          sortedOpen,
+          sortedHigh,
+          sortedLow,
+          sortedClose,
+          sortedVolume,
+          priceScale,
+          Field.ALL);
+    }
+
+    // Alpha Vantage lists the newest bar first, so descending input is handled without sorting
+    private int[] order() {
+      boolean ascending = true;
+      boolean descending = true;
+      for (int i = 1; i < size; i++) {
+        ascending &= timestamps[i - 1] <= timestamps[i];
+        descending &= timestamps[i - 1] >= timestamps[i];
+      }
+      if (ascending) {
+        return IntStream.range(0, size).toArray();
+      } else if (descending) {
+        return IntStream.range(0, size).map(i -> size - 1 - i).toArray();
+      }
+      return IntStream.range(0, size)
+          .boxed()
+          .sorted(Comparator.comparingLong(index -> timestamps[index]))
+          .mapToInt(Integer::intValue)
+          .toArray();
+    }
+  }
+
+  public static class Serializer extends JsonSerializer<StockSeries> {
+    @Override
+    public void serialize(StockSeries series, JsonGenerator gen, SerializerProvider serializers)
+        throws IOException {
+      gen.writeStartObject();
+      for (int i = series.size() - 1; i >= 0; i--) {
+        gen.writeFieldName(series.formatTimestamp(i));
+        gen.writeStartObject();
+        for (Field field : series.getFields()) {
+          gen.writeStringField(field.getJsonName(), series.format(field, i));
+        }
+        gen.writeEndObject();
+      }
+      gen.writeEndObject();
+    }
+  }
+
+  public static class Deserializer extends JsonDeserializer<StockSeries> {
+    @Override
+    public StockSeries deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+      return read(p);
+    }
+  }
+
+  /** Reads a time series object, the parser must be positioned at its start. */
+  public static StockSeries read(JsonParser p) throws IOException {
+    if (p.currentToken() != JsonToken.START_OBJECT) {
+      throw JsonMappingException.from(p, "Expected time series object");
+    }
+    Builder builder = builder();
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      long timestamp = readTimestamp(p);
+      if (p.nextToken() != JsonToken.START_OBJECT) {
+        throw JsonMappingException.from(p, "Expected bar object");
+      }
+
+      double open = 0;
+      double high = 0;
+      double low = 0;
+      double close = 0;
+      long volume = 0;
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String field = p.getCurrentName();
+        p.nextToken();
+        switch (field) {
+          case "1. open":
+            open = readPrice(p, builder);
+            break;
+          case "2. high":
+            high = readPrice(p, builder);
+            break;
+          case "3. low":
+            low = readPrice(p, builder);
+            break;
+          case "4. close":
+            close = readPrice(p, builder);
+            break;
+          case "5. volume":
+            volume = readVolume(p);
+            break;
+          default:
+            p.skipChildren();
+        }
+      }
+      builder.add(timestamp, open, high, low, close, volume);
+    }
+    return builder.build();
+  }
+
+  // The readers below parse the token characters in place, the String based parsers are only used
+  // for input they do not handle, to produce the same results and errors.
+
+  private static long readTimestamp(JsonParser p) throws IOException {
+    char[] text = p.getTextCharacters();
+    int offset = p.getTextOffset();
+    if (p.getTextLength() == 19
+        && text[offset + 4] == '-'
+        && text[offset + 7] == '-'
+        && text[offset + 10] == ' '
+        && text[offset + 13] == ':'
+        && text[offset + 16] == ':') {
+      int year = (int) digits(text, offset, 4);
+      int month = (int) digits(text, offset + 5, 2);
+      int day = (int) digits(text, offset + 8, 2);
+      int hour = (int) digits(text, offset + 11, 2);
+      int minute = (int) digits(text, offset + 14, 2);
+      int second = (int) digits(text, offset + 17, 2);
+      if (year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0 && second >= 0) {
+        try {
+          LocalDateTime time = LocalDateTime.of(year, month, day, hour, minute, second);
+          return time.toEpochSecond(ZONE.getRules().getOffset(time));
+        } catch (DateTimeException e) {
+          throw JsonMappingException.from(p, "Invalid timestamp " + p.getText(), e);
+        }
+      }
+    }
+    try {
+      return parseTimestamp(p.getText());
+    } catch (DateTimeParseException e) {
+      throw JsonMappingException.from(p, "Invalid timestamp " + p.getText(), e);
+    }
+  }
+
+  private static double readPrice(JsonParser p, Builder builder) throws IOException {
+    char[] text = p.getTextCharacters();
+    int offset = p.getTextOffset();
+    int length = p.getTextLength();
+    boolean negative = length > 0 && text[offset] == '-';
+    long mantissa = 0;
+    int digits = 0;
+    int scale = -1;
+    for (int i = negative ? 1 : 0; i < length; i++) {
+      char c = text[offset + i];
+      if (c == '.' && scale < 0) {
+        scale = 0;
+      } else if (c >= '0' && c <= '9' && digits < MAX_EXACT_DIGITS) {
+        mantissa = mantissa * 10 + (c - '0');
+        digits++;
+        if (scale >= 0) {
+          scale++;
+        }
+      } else {
+        return parsePrice(p, builder);
+      }
+    }
+    if (digits == 0) {
+      return parsePrice(p, builder);
+    }
+    scale = Math.max(scale, 0);
+    builder.priceScale(scale);
+    // Both operands are exact, so the division is rounded like Double.parseDouble
+    double value = mantissa / POWERS_OF_TEN[scale];
+    return negative ? -value : value;
+  }
+
+  private static double parsePrice(JsonParser p, Builder builder) throws IOException {
+    String text = p.getText();
+    int decimalPoint = text.indexOf('.');
+    if (decimalPoint >= 0) {
+      builder.priceScale(text.length() - decimalPoint - 1);
+    }
+    try {
+      return Double.parseDouble(text);
+    } catch (NumberFormatException e) {
+      throw JsonMappingException.from(p, "Invalid price " + text, e);
+    }
+  }
+
+  private static long readVolume(JsonParser p) throws IOException {
+    char[] text = p.getTextCharacters();
+    int offset = p.getTextOffset();
+    int length = p.getTextLength();
+    if (length > 0 && length <= MAX_EXACT_DIGITS) {
+      long volume = digits(text, offset, length);
+      if (volume >= 0) {
+        return volume;
+      }
+    }
+    try {
+      return Long.parseLong(p.getText());
+    } catch (NumberFormatException e) {
+      throw JsonMappingException.from(p, "Invalid volume " + p.getText(), e);
+    }
+  }
+
+  /** Parses the digits, -1 if any other character is found. */
+  private static long digits(char[] text, int offset, int length) {
+    long value = 0;
+    for (int i = offset; i < offset + length; i++) {
+      if (text[i] < '0' || text[i] > '9') {
+        return -1;
+      }
+      value = value * 10 + (text[i] - '0');
+    }
+    return value;
+  }
+}
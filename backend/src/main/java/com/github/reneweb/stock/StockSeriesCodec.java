@@ -0,0 +1,150 @@
+package com.github.reneweb.stock;
+
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Compact binary form of a series for the shared cache, around 15 bytes per bar instead of about
+ * 170 as JSON. Values are written as variable length integers: timestamps as the difference to the
+ * previous bar, prices scaled by the price scale and as the difference to the previous close, and
+ * volumes as is. Series with more than 9 decimals keep their prices as doubles.
+ */
+final class StockSeriesCodec {
+  private static final byte SCALED = 1;
+  private static final byte DOUBLES = 2;
+  private static final int MAX_SCALED_DECIMALS = 9;
+  private static final int MAX_HEADER_BYTES = 13;
+  private static final int MAX_BAR_BYTES = 60;
+
+  private StockSeriesCodec() {}
+
+  static byte[] encode(StockSeries series) {
+    boolean scaled = series.getPriceScale() <= MAX_SCALED_DECIMALS;
+    ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_BYTES + series.size() * MAX_BAR_BYTES);
+    buffer.put(scaled ? SCALED : DOUBLES);
+    buffer.put((byte) series.getPriceScale());
+    buffer.put((byte) mask(series.getFields()));
+    writeVarLong(buffer, series.size());
+
+    long factor = pow10(scaled ? series.getPriceScale() : 0);
+    long previousTimestamp = 0;
+    long previousClose = 0;
+    for (int i = 0; i < series.size(); i++) {
+      writeSignedVarLong(buffer, series.getTimestamp(i) - previousTimestamp);
+      previousTimestamp = series.getTimestamp(i);
+      if (scaled) {
+        writeSignedVarLong(buffer, Math.round(series.getOpen(i) * factor) - previousClose);
+        writeSignedVarLong(buffer, Math.round(series.getHigh(i) * factor) - previousClose);
+        writeSignedVarLong(buffer, Math.round(series.getLow(i) * factor) - previousClose);
+        previousClose = Math.round(series.getClose(i) * factor);
+        writeSignedVarLong(buffer, previousClose - Math.round(series.getLow(i) * factor));
+      } else {
+        buffer.putDouble(series.getOpen(i));
+        buffer.putDouble(series.getHigh(i));
+        buffer.putDouble(series.getLow(i));
+        buffer.putDouble(series.getClose(i));
+      }
+      writeVarLong(buffer, series.getVolume(i));
+    }
+
+    byte[] bytes = new byte[buffer.position()];
+    buffer.flip().get(bytes);
+    return bytes;
+  }
+
+  static StockSeries decode(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    byte format = buffer.get();
+    if (format != SCALED && format != DOUBLES) {
+      throw new IllegalArgumentException("Unknown series format " + format);
+    }
+    int priceScale = buffer.get();
+    int mask = buffer.get();
+    int size = (int) readVarLong(buffer);
+
+    StockSeries.Builder builder = StockSeries.builder().priceScale(priceScale);
+    double factor = pow10(format == SCALED ? priceScale : 0);
+    long timestamp = 0;
+    long close = 0;
+    for (int i = 0; i < size; i++) {
+      timestamp += readSignedVarLong(buffer);
+      if (format == SCALED) {
+        long open = close + readSignedVarLong(buffer);
+        long high = close + readSignedVarLong(buffer);
+        long low = close + readSignedVarLong(buffer);
+        close = low + readSignedVarLong(buffer);
+        builder.add(
+            timestamp,
+            open / factor,
+            high / factor,
+            low / factor,
+            close / factor,
+            readVarLong(buffer));
+      } else {
+        builder.add(
+            timestamp,
+            buffer.getDouble(),
+            buffer.getDouble(),
+            buffer.getDouble(),
+            buffer.getDouble(),
+            readVarLong(buffer));
+      }
+    }
+    return builder.build().withFields(fields(mask));
+  }
+
+  private static int mask(Set<StockSeries.Field> fields) {
+    int mask = 0;
+    for (StockSeries.Field field : fields) {
+      mask |= 1 << field.ordinal();
+    }
+    return mask;
+  }
+
+  private static Set<StockSeries.Field> fields(int mask) {
+    Set<StockSeries.Field> fields = EnumSet.noneOf(StockSeries.Field.class);
+    for (StockSeries.Field field : StockSeries.Field.values()) {
+      if ((mask & 1 << field.ordinal()) != 0) {
+        fields.add(field);
+      }
+    }
+    return fields;
+  }
+
+  private static long pow10(int exponent) {
+    long result = 1;
+    for (int i = 0; i < exponent; i++) {
+      result *= 10;
+    }
+    return result;
+  }
+
+  private static void writeSignedVarLong(ByteBuffer buffer, long value) {
+    writeVarLong(buffer, (value << 1) ^ (value >> 63));
+  }
+
+  private static void writeVarLong(ByteBuffer buffer, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private static long readSignedVarLong(ByteBuffer buffer) {
+    long value = readVarLong(buffer);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static long readVarLong(ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+  }
+}
@@ -2,95 +2,138 @@ package com.github.reneweb.stock;
 
 import com.github.reneweb.facebook.FBAccessTokenValidator;
 import com.github.reneweb.facebook.FBTokenData;
-import io.micrometer.core.instrument.MeterRegistry;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 @Service
 public class StockService {
+  static final int MAX_BATCH_SYMBOLS = 100;
 
   private final FBAccessTokenValidator fbAccessTokenValidator;
-  private final StockClient stockClient;
-  private final StockRepository stockRepository;
-  private final MeterRegistry meterRegistry;
+  private final StockCache stockCache;
+  private final StockFetcher stockFetcher;
+  private final SymbolIndex symbolIndex;
+  private final WatchlistCache watchlistCache;
+  private final WatchlistWriter watchlistWriter;
 
   @Autowired
   public StockService(
       FBAccessTokenValidator fbAccessTokenValidator,
-      StockClient stockClient,
-      StockRepository stockRepository,
-      MeterRegistry meterRegistry) {
+      StockCache stockCache,
+      StockFetcher stockFetcher,
+      SymbolIndex symbolIndex,
+      WatchlistCache watchlistCache,
+      WatchlistWriter watchlistWriter) {
     this.fbAccessTokenValidator = fbAccessTokenValidator;
-    this.stockClient = stockClient;
-    this.stockRepository = stockRepository;
-    this.meterRegistry = meterRegistry;
+    this.stockCache = stockCache;
+    this.stockFetcher = stockFetcher;
+    this.symbolIndex = symbolIndex;
+    this.watchlistCache = watchlistCache;
+    this.watchlistWriter = watchlistWriter;
   }
 
   public Stock getStock(String symbol) {
-    return stockClient.fetchStockBySymbol(symbol);
+    return stockCache.get(symbol);
+  }
+
+  /** The stock as this node resolves it when it owns the symbol, for other nodes. */
+  public Stock getOwnedStock(String symbol, FetchPriority priority) {
+    return stockCache.getOwned(symbol, priority);
+  }
+
+  /**
+   * Fetches the symbols concurrently. Each symbol maps to its stock or the reason it could not be
+   * fetched.
+   */
+  public Map<String, StockResult> getStocks(List<String> symbols) {
+    return stockFetcher.fetchResults(normalizeSymbols(symbols));
+  }
+
+  /** Trims, upper-cases and removes duplicates, at least one and at most 100 symbols. */
+  public Set<String> normalizeSymbols(List<String> symbols) {
+    Set<String> normalized = new LinkedHashSet<>();
+    for (String symbol : symbols) {
+      String trimmed = symbol.trim();
+      if (!trimmed.isEmpty()) {
+        normalized.add(trimmed.toUpperCase(Locale.ROOT));
+      }
+    }
+    if (normalized.isEmpty()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No symbols");
+    }
+    if (normalized.size() > MAX_BATCH_SYMBOLS) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many symbols");
+    }
+    return normalized;
   }
 
   public Set<Stock> getWatchlist(String userAccessToken) {
+    return new HashSet<>(getWatchlistStocks(userAccessToken).values());
+  }
+
+  /** Stocks by symbol, symbols that could not be fetched are left out. */
+  public Map<String, Stock> getWatchlistStocks(String userAccessToken) {
     FBTokenData tokenData = fbAccessTokenValidator.validate(userAccessToken);
 
-    return timedFindById(tokenData)
-        .map(
-            entity ->
-                entity.getSymbols().stream()
-                    .map(stockClient::fetchStockBySymbol)
-                    .collect(Collectors.toSet()))
-        .orElse(Set.of());
+    return findSymbols(tokenData).map(stockFetcher::fetchAll).orElse(Map.of());
   }
 
-  public void addStockToWatchlist(String userAccessToken, String symbol) {
+  public Set<String> getWatchlistSymbols(String userAccessToken) {
     FBTokenData tokenData = fbAccessTokenValidator.validate(userAccessToken);
-    stockClient.fetchStockBySymbol(symbol);
-
-    timedFindById(tokenData)
-        .ifPresentOrElse(
-            entity -> {
-              entity.getSymbols().add(symbol);
-              timedSave(entity);
-            },
-            () -> {
-              StockWatchlistEntity entity =
-                  new StockWatchlistEntity(tokenData.getUserId(), Set.of(symbol));
-              timedSave(entity);
-            });
+
+    return findSymbols(tokenData).orElse(Set.of());
   }
 
-  public void removeStockFromWatchlist(String userAccessToken, String symbol) {
+  public CompletableFuture<Void> streamWatchlist(
+      String userAccessToken, Consumer<SymbolQuote> consumer) {
     FBTokenData tokenData = fbAccessTokenValidator.validate(userAccessToken);
-    stockClient.fetchStockBySymbol(symbol);
-
-    timedFindById(tokenData)
-        .ifPresent(
-            entity -> {
-              entity.getSymbols().remove(symbol);
-              if (entity.getSymbols().isEmpty()) {
-                timedDelete(entity);
-              } else {
-                timedSave(entity);
-              }
-            });
+
+    Set<String> symbols = findSymbols(tokenData).orElse(Set.of());
+    return stockFetcher.fetchEach(symbols, consumer);
   }
 
-  private Optional<StockWatchlistEntity> timedFindById(FBTokenData tokenData) {
-    return meterRegistry
-        .timer("dynamodb", "operation", "findById")
-        .record(() -> stockRepository.findById(tokenData.getUserId()));
+  /** Symbols are stored trimmed and upper-cased, so a symbol is in a watchlist at most once. */
+  public void addStockToWatchlist(String userAccessToken, String symbol) {
+    FBTokenData tokenData = fbAccessTokenValidator.validate(userAccessToken);
+    String normalized = normalizeSymbol(symbol);
+    if (!symbolIndex.contains(normalized)) {
+      stockCache.get(normalized, FetchPriority.VALIDATION);
+    }
+
+    watchlistWriter.addSymbol(tokenData.getUserId(), normalized);
+    watchlistCache.added(tokenData.getUserId(), normalized);
+  }
+
+  public void removeStockFromWatchlist(String userAccessToken, String symbol) {
+    FBTokenData tokenData = fbAccessTokenValidator.validate(userAccessToken);
+    String normalized = normalizeSymbol(symbol);
+    watchlistWriter.removeSymbol(tokenData.getUserId(), normalized);
+    watchlistCache.removed(tokenData.getUserId(), normalized);
   }
 
-  private void timedSave(StockWatchlistEntity entity) {
-    meterRegistry.timer("dynamodb", "operation", "save").record(() -> stockRepository.save(entity));
+  private static String normalizeSymbol(String symbol) {
+    String trimmed = symbol.trim();
+    if (trimmed.isEmpty()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No symbol");
+    }
+    return trimmed.toUpperCase(Locale.ROOT);
   }
 
-  private void timedDelete(StockWatchlistEntity entity) {
-    meterRegistry
-        .timer("dynamodb", "operation", "delete")
-        .record(() -> stockRepository.delete(entity));
+  private Optional<Set<String>> findSymbols(FBTokenData tokenData) {
+    Set<String> symbols =
+        watchlistWriter.withPendingChanges(
+            tokenData.getUserId(), watchlistCache.get(tokenData.getUserId()));
+    return symbols.isEmpty() ? Optional.empty() : Optional.of(symbols);
   }
 }
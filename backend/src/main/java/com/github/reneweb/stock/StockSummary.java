@@ -0,0 +1,140 @@
+package com.github.reneweb.stock;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Last price and the aggregates of the latest trading day in a series. The change is measured from
+ * the last close of the previous session, like quotes usually are. It is null if the series does
+ * not reach back to the previous session.
+ */
+public class StockSummary {
+
+  private final String time;
+  private final BigDecimal lastPrice;
+  private final BigDecimal previousClose;
+  private final BigDecimal change;
+  private final BigDecimal changePercent;
+  private final BigDecimal dayHigh;
+  private final BigDecimal dayLow;
+  private final long volume;
+
+  private StockSummary(
+      String time,
+      BigDecimal lastPrice,
+      BigDecimal previousClose,
+      BigDecimal change,
+      BigDecimal changePercent,
+      BigDecimal dayHigh,
+      BigDecimal dayLow,
+      long volume) {
+    this.time = time;
+    this.lastPrice = lastPrice;
+    this.previousClose = previousClose;
+    this.change = change;
+    this.changePercent = changePercent;
+    this.dayHigh = dayHigh;
+    this.dayLow = dayLow;
+    this.volume = volume;
+  }
+
+  /** Returns null for an empty series. */
+  static StockSummary of(StockSeries series) {
+    if (series.isEmpty()) {
+      return null;
+    }
+
+    int last = series.size() - 1;
+    LocalDate day = date(series, last);
+    int first = last;
+    double high = series.getHigh(last);
+    double low = series.getLow(last);
+    long volume = series.getVolume(last);
+    while (first > 0 && date(series, first - 1).equals(day)) {
+      first--;
+      high = Math.max(high, series.getHigh(first));
+      low = Math.min(low, series.getLow(first));
+      volume += series.getVolume(first);
+    }
+
+    BigDecimal lastPrice = price(series, series.getClose(last));
+    BigDecimal previousClose = first > 0 ? price(series, series.getClose(first - 1)) : null;
+    BigDecimal change = null;
+    BigDecimal changePercent = null;
+    if (previousClose != null) {
+      change = lastPrice.subtract(previousClose);
+      changePercent =
+          previousClose.signum() == 0
+              ? BigDecimal.ZERO
+              : change
+                  .multiply(BigDecimal.valueOf(100))
+                  .divide(previousClose, 2, RoundingMode.HALF_UP);
+    }
+    return new StockSummary(
+        series.formatTimestamp(last),
+        lastPrice,
+        previousClose,
+        change,
+        changePercent,
+        price(series, high),
+        price(series, low),
+        volume);
+  }
+
+  /** Summaries sorted by symbol, stocks without bars are left out. */
+  public static Map<String, StockSummary> bySymbol(Map<String, Stock> stocks) {
+    Map<String, StockSummary> summaries = new TreeMap<>();
+    stocks.forEach(
+        (symbol, stock) -> {
+          StockSummary summary = stock.getSummary();
+          if (summary != null) {
+            summaries.put(symbol, summary);
+          }
+        });
+    return summaries;
+  }
+
+  private static LocalDate date(StockSeries series, int index) {
+    return LocalDate.ofInstant(Instant.ofEpochSecond(series.getTimestamp(index)), StockSeries.ZONE);
+  }
+
+  private static BigDecimal price(StockSeries series, double price) {
+    return BigDecimal.valueOf(price).setScale(series.getPriceScale(), RoundingMode.HALF_UP);
+  }
+
+  public String getTime() {
+    return time;
+  }
+
+  public BigDecimal getLastPrice() {
+    return lastPrice;
+  }
+
+  public BigDecimal getPreviousClose() {
+    return previousClose;
+  }
+
+  public BigDecimal getChange() {
+    return change;
+  }
+
+  public BigDecimal getChangePercent() {
+    return changePercent;
+  }
+
+  public BigDecimal getDayHigh() {
+    return dayHigh;
+  }
+
+  public BigDecimal getDayLow() {
+    return dayLow;
+  }
+
+  public long getVolume() {
+    return volume;
+  }
+}
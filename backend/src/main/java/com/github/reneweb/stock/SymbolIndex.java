@@ -0,0 +1,47 @@
+package com.github.reneweb.stock;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Symbols known to be valid, so watchlist changes do not need an upstream call to validate them.
+ * Seeded from a file and extended with every symbol that was fetched successfully.
+ */
+@Component
+public class SymbolIndex {
+
+  private final Set<String> symbols = ConcurrentHashMap.newKeySet();
+
+  @Autowired
+  public SymbolIndex(@Value("${stock.symbols.location}") Resource resource) {
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+      reader
+          .lines()
+          .map(String::trim)
+          .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+          .forEach(this::add);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public boolean contains(String symbol) {
+    return symbols.contains(symbol.toUpperCase(Locale.ROOT));
+  }
+
+  public void add(String symbol) {
+    symbols.add(symbol.toUpperCase(Locale.ROOT));
+  }
+}
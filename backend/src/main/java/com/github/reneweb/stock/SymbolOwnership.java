@@ -0,0 +1,94 @@
+package com.github.reneweb.stock;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Assigns every symbol to one node of the cluster by consistent hashing, with several points on the
+ * ring per node. When a node joins or leaves only the symbols between its points and their
+ * predecessors move, roughly 1/n of them, the rest keep their owner. Without configured nodes every
+ * node owns every symbol, otherwise this node has to be one of them.
+ *
+ * <p>Membership is static: the members are read from cluster.nodes at startup and nothing watches
+ * for nodes joining or leaving. Changing the cluster means updating cluster.nodes on every node and
+ * restarting them. Until all nodes agree on the members, a symbol may be fetched by two nodes.
+ */
+@Component
+public class SymbolOwnership {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SymbolOwnership.class);
+
+  private final String self;
+  private final int virtualNodes;
+  private volatile NavigableMap<Long, String> ring = new TreeMap<>();
+
+  @Autowired
+  public SymbolOwnership(
+      @Value("${cluster.self}") String self,
+      @Value("${cluster.nodes}") String nodes,
+      @Value("${cluster.virtual-nodes}") int virtualNodes) {
+    this.self = self;
+    this.virtualNodes = virtualNodes;
+    List<String> members =
+        Arrays.stream(nodes.split(","))
+            .map(String::trim)
+            .filter(node -> !node.isEmpty())
+            .collect(Collectors.toList());
+    if (!members.isEmpty() && !members.contains(self)) {
+      throw new IllegalStateException(
+          "cluster.self " + self + " is not one of cluster.nodes " + members);
+    }
+    setMembers(members);
+  }
+
+  /** Replaces the members. Only called on startup, as the membership is static. */
+  synchronized void setMembers(Collection<String> nodes) {
+    NavigableMap<Long, String> updated = new TreeMap<>();
+    for (String node : nodes) {
+      for (int i = 0; i < virtualNodes; i++) {
+        updated.put(hash(node + "#" + i), node);
+      }
+    }
+    ring = updated;
+    LOGGER.info("Cluster members are {}", nodes);
+  }
+
+  public List<String> getMembers() {
+    return ring.values().stream().distinct().sorted().collect(Collectors.toList());
+  }
+
+  public String getSelf() {
+    return self;
+  }
+
+  /** Returns null if no nodes are configured. */
+  public String ownerOf(String key) {
+    NavigableMap<Long, String> current = ring;
+    if (current.isEmpty()) {
+      return null;
+    }
+    Map.Entry<Long, String> owner = current.ceilingEntry(hash(key));
+    return owner != null ? owner.getValue() : current.firstEntry().getValue();
+  }
+
+  public boolean isOwner(String key) {
+    String owner = ownerOf(key);
+    return owner == null || owner.equals(self);
+  }
+
+  private static long hash(String value) {
+    return ByteBuffer.wrap(DigestUtils.md5Digest(value.getBytes(StandardCharsets.UTF_8))).getLong();
+  }
+}
@@ -0,0 +1,83 @@
+package com.github.reneweb.stock;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ranks symbols by how many watchlists contain them plus how often they were requested recently.
+ * Request counts are halved every time the ranking is taken, so old traffic fades out. Only the
+ * watchlist counts of the most watched symbols are read, the others count as requests only.
+ */
+@Component
+public class SymbolPopularity {
+
+  private final SymbolWatchers symbolWatchers;
+  private final long watchlistWeight;
+  private final int watchlistTop;
+  private final ConcurrentMap<String, LongAdder> requests = new ConcurrentHashMap<>();
+  private volatile Map<String, Long> watchlistCounts = Map.of();
+
+  @Autowired
+  public SymbolPopularity(
+      SymbolWatchers symbolWatchers,
+      @Value("${stock.refresh.watchlist-weight}") long watchlistWeight,
+      @Value("${stock.refresh.watchlist-top}") int watchlistTop) {
+    this.symbolWatchers = symbolWatchers;
+    this.watchlistWeight = watchlistWeight;
+    this.watchlistTop = watchlistTop;
+  }
+
+  public void recordRequest(String symbol) {
+    requests.computeIfAbsent(normalize(symbol), key -> new LongAdder()).increment();
+  }
+
+  @Scheduled(
+      initialDelayString = "${stock.refresh.watchlist-counts-delay-ms}",
+      fixedDelayString = "${stock.refresh.watchlist-counts-interval-ms}")
+  public void refreshWatchlistCounts() {
+    Map<String, Long> counts = new HashMap<>();
+    symbolWatchers
+        .top(watchlistTop)
+        .forEach((symbol, watchers) -> counts.merge(normalize(symbol), watchers, Long::sum));
+    watchlistCounts = counts;
+  }
+
+  public List<String> top(int limit) {
+    Map<String, Long> scores = new HashMap<>();
+    watchlistCounts.forEach(
+        (symbol, count) -> scores.merge(symbol, count * watchlistWeight, Long::sum));
+    requests.forEach(
+        (symbol, count) -> {
+          long recent = count.sumThenReset();
+          if (recent > 1) {
+            count.add(recent / 2);
+          }
+          if (recent > 0) {
+            scores.merge(symbol, recent, Long::sum);
+          } else {
+            requests.remove(symbol, count);
+          }
+        });
+
+    return scores.entrySet().stream()
+        .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+        .limit(limit)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  private static String normalize(String symbol) {
+    return symbol.toUpperCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,19 @@
+package com.github.reneweb.stock;
+
+public class SymbolQuote {
+  private final String symbol;
+  private final Stock stock;
+
+  public SymbolQuote(String symbol, Stock stock) {
+    this.symbol = symbol;
+    this.stock = stock;
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  public Stock getStock() {
+    return stock;
+  }
+}
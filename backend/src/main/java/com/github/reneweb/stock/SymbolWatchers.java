@@ -0,0 +1,364 @@
+package com.github.reneweb.stock;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Number of watchlists containing each symbol, kept in the WatchlistSymbols table. The most watched
+ * symbols are read from an index on the count, so the ranking does not scan any table.
+ *
+ * <p>The watchlist writers report every symbol they actually added to or removed from a watchlist.
+ * These changes are journaled like the write-behind changes and written, summed up per symbol, with
+ * the next flush. A count that drops to zero or below is deleted, as removals of symbols that were
+ * never counted would otherwise leave it negative. The counts are reconciled with the watchlists
+ * once a day, which also fills them in for watchlists from before they were kept.
+ */
+@Component
+public class SymbolWatchers {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SymbolWatchers.class);
+  static final String TABLE = "WatchlistSymbols";
+  static final String INDEX = "watchers-index";
+  private static final String WATCHLIST_TABLE = "Watchlist";
+  // Every count shares the partition of the index, which is sorted by the count
+  private static final String RANKING = "all";
+
+  private final AmazonDynamoDB amazonDynamoDB;
+  private final SymbolOwnership symbolOwnership;
+  private final MeterRegistry meterRegistry;
+  private final WatchlistJournal journal;
+  private final Object lock = new Object();
+  private final Object flushLock = new Object();
+
+  // Per symbol the watchlist changes that are not counted yet
+  private Map<String, List<WatchlistJournal.Entry>> pending = new HashMap<>();
+
+  @Autowired
+  public SymbolWatchers(
+      AmazonDynamoDB amazonDynamoDB,
+      SymbolOwnership symbolOwnership,
+      MeterRegistry meterRegistry,
+      @Value("${watchlist.watchers.journal}") String journalPath) {
+    this.amazonDynamoDB = amazonDynamoDB;
+    this.symbolOwnership = symbolOwnership;
+    this.meterRegistry = meterRegistry;
+
+    try {
+      this.journal = new WatchlistJournal(Paths.get(journalPath));
+      List<WatchlistJournal.Entry> entries = journal.replay();
+      entries.forEach(this::queue);
+      journal.rewrite(entries);
+      if (!entries.isEmpty()) {
+        LOGGER.info("Replayed {} watcher changes from {}", entries.size(), journalPath);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    Gauge.builder("watchlist.watchers.pending", this, SymbolWatchers::pendingSymbols)
+        .register(meterRegistry);
+  }
+
+  /** Watchers of the most watched symbols. */
+  public Map<String, Long> top(int limit) {
+    Map<String, Long> counts = new HashMap<>();
+    Map<String, AttributeValue> startKey = null;
+    do {
+      QueryRequest request =
+          new QueryRequest()
+              .withTableName(TABLE)
+              .withIndexName(INDEX)
+              .withKeyConditionExpression("ranking = :ranking")
+              .withExpressionAttributeValues(Map.of(":ranking", new AttributeValue(RANKING)))
+              .withProjectionExpression("symbol, watchers")
+              .withScanIndexForward(false)
+              .withLimit(limit - counts.size())
+              .withExclusiveStartKey(startKey);
+      QueryResult result =
+          meterRegistry
+              .timer("dynamodb", "operation", "readWatchers")
+              .record(() -> amazonDynamoDB.query(request));
+      result.getItems().forEach(item -> readCount(item, counts));
+      startKey = result.getLastEvaluatedKey();
+    } while (counts.size() < limit && startKey != null && !startKey.isEmpty());
+    return counts;
+  }
+
+  public void added(String userId, String symbol) {
+    record(List.of(new WatchlistJournal.Entry(userId, symbol, true)));
+  }
+
+  public void removed(String userId, String symbol) {
+    record(List.of(new WatchlistJournal.Entry(userId, symbol, false)));
+  }
+
+  /** Records symbols that were added to or removed from watchlists. */
+  void record(List<WatchlistJournal.Entry> changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
+    try {
+      long sequence;
+      synchronized (lock) {
+        sequence = journal.append(changes);
+        changes.forEach(this::queue);
+      }
+      journal.sync(sequence);
+    } catch (IOException e) {
+      // The watchlists are already changed, the next reconciliation corrects the counts
+      LOGGER.warn("Could not journal the watcher changes {}", changes, e);
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${watchlist.watchers.flush-interval-ms}")
+  public void flush() {
+    synchronized (flushLock) {
+      Map<String, List<WatchlistJournal.Entry>> batch;
+      synchronized (lock) {
+        if (pending.isEmpty()) {
+          return;
+        }
+        batch = pending;
+        pending = new HashMap<>();
+        try {
+          journal.startFlush();
+        } catch (IOException e) {
+          LOGGER.warn("Could not rotate the watcher journal, retrying with the next flush", e);
+          pending = batch;
+          return;
+        }
+      }
+
+      List<WatchlistJournal.Entry> failed = new ArrayList<>();
+      batch.forEach(
+          (symbol, changes) -> {
+            long delta = changes.stream().mapToLong(change -> change.isAdd() ? 1 : -1).sum();
+            if (delta != 0 && !write(symbol, delta)) {
+              failed.addAll(changes);
+            }
+          });
+
+      synchronized (lock) {
+        failed.forEach(this::queue);
+        try {
+          journal.sync(journal.append(failed));
+          journal.completeFlush();
+        } catch (IOException e) {
+          LOGGER.warn("Could not complete the watcher journal flush", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets every count to the number of watchlists containing the symbol. Counts that changed while
+   * the watchlists were read are left to the next run. Only one node of the cluster reconciles.
+   */
+  @Scheduled(
+      initialDelayString = "${watchlist.watchers.reconcile-delay-ms}",
+      fixedDelayString = "${watchlist.watchers.reconcile-interval-ms}")
+  public void reconcile() {
+    if (!symbolOwnership.isOwner(TABLE)) {
+      return;
+    }
+    Map<String, Long> before = stored();
+    Map<String, Long> actual = watched();
+    Map<String, Long> after = stored();
+
+    Set<String> symbols = new HashSet<>(actual.keySet());
+    symbols.addAll(after.keySet());
+    int repaired = 0;
+    for (String symbol : symbols) {
+      Long seen = after.get(symbol);
+      long count = actual.getOrDefault(symbol, 0L);
+      if (Objects.equals(before.get(symbol), seen)
+          && (seen == null ? count != 0 : seen != count)
+          && repair(symbol, seen, count)) {
+        repaired++;
+      }
+    }
+    meterRegistry.counter("watchlist.watchers.repaired").increment(repaired);
+    if (repaired > 0) {
+      LOGGER.info("Repaired the watchers of {} symbols", repaired);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() throws IOException {
+    flush();
+    journal.close();
+  }
+
+  private void queue(WatchlistJournal.Entry change) {
+    pending.computeIfAbsent(change.getSymbol(), key -> new ArrayList<>()).add(change);
+  }
+
+  private boolean write(String symbol, long delta) {
+    UpdateItemRequest request =
+        new UpdateItemRequest()
+            .withTableName(TABLE)
+            .withKey(key(symbol))
+            .withUpdateExpression("ADD watchers :delta SET ranking = :ranking")
+            .withExpressionAttributeValues(
+                Map.of(
+                    ":delta",
+                    new AttributeValue().withN(Long.toString(delta)),
+                    ":ranking",
+                    new AttributeValue(RANKING)))
+            .withReturnValues(ReturnValue.UPDATED_NEW);
+
+    try {
+      UpdateItemResult result =
+          meterRegistry
+              .timer("dynamodb", "operation", "changeWatchers")
+              .record(() -> amazonDynamoDB.updateItem(request));
+      if (Long.parseLong(result.getAttributes().get("watchers").getN()) <= 0) {
+        deleteUnwatched(symbol);
+      }
+      return true;
+    } catch (RuntimeException e) {
+      LOGGER.warn("Changing the watchers of {} failed, retrying with the next flush", symbol, e);
+      return false;
+    }
+  }
+
+  private void deleteUnwatched(String symbol) {
+    DeleteItemRequest request =
+        new DeleteItemRequest()
+            .withTableName(TABLE)
+            .withKey(key(symbol))
+            .withConditionExpression("watchers <= :zero")
+            .withExpressionAttributeValues(Map.of(":zero", new AttributeValue().withN("0")));
+
+    try {
+      meterRegistry
+          .timer("dynamodb", "operation", "deleteWatchers")
+          .record(() -> amazonDynamoDB.deleteItem(request));
+    } catch (ConditionalCheckFailedException e) {
+      // The symbol was added to a watchlist concurrently, keep the count
+    }
+  }
+
+  /** Returns false if the count changed concurrently. */
+  private boolean repair(String symbol, Long seen, long count) {
+    try {
+      if (count == 0) {
+        DeleteItemRequest request =
+            new DeleteItemRequest()
+                .withTableName(TABLE)
+                .withKey(key(symbol))
+                .withConditionExpression("watchers = :seen")
+                .withExpressionAttributeValues(
+                    Map.of(":seen", new AttributeValue().withN(Long.toString(seen))));
+        meterRegistry
+            .timer("dynamodb", "operation", "repairWatchers")
+            .record(() -> amazonDynamoDB.deleteItem(request));
+        return true;
+      }
+
+      Map<String, AttributeValue> values = new HashMap<>();
+      values.put(":count", new AttributeValue().withN(Long.toString(count)));
+      values.put(":ranking", new AttributeValue(RANKING));
+      String condition = "attribute_not_exists(symbol)";
+      if (seen != null) {
+        values.put(":seen", new AttributeValue().withN(Long.toString(seen)));
+        condition = "watchers = :seen";
+      }
+      UpdateItemRequest request =
+          new UpdateItemRequest()
+              .withTableName(TABLE)
+              .withKey(key(symbol))
+              .withUpdateExpression("SET watchers = :count, ranking = :ranking")
+              .withConditionExpression(condition)
+              .withExpressionAttributeValues(values);
+      meterRegistry
+          .timer("dynamodb", "operation", "repairWatchers")
+          .record(() -> amazonDynamoDB.updateItem(request));
+      return true;
+    } catch (ConditionalCheckFailedException e) {
+      return false;
+    }
+  }
+
+  /** All stored counts, including counts that are not positive. */
+  private Map<String, Long> stored() {
+    Map<String, Long> counts = new HashMap<>();
+    scan(
+        new ScanRequest().withTableName(TABLE).withProjectionExpression("symbol, watchers"),
+        "scanWatchers",
+        item -> counts.put(item.get("symbol").getS(), Long.parseLong(item.get("watchers").getN())));
+    return counts;
+  }
+
+  private Map<String, Long> watched() {
+    Map<String, Long> counts = new HashMap<>();
+    scan(
+        new ScanRequest().withTableName(WATCHLIST_TABLE).withProjectionExpression("symbols"),
+        "scanWatchlists",
+        item -> {
+          if (item.containsKey("symbols")) {
+            item.get("symbols").getSS().forEach(symbol -> counts.merge(symbol, 1L, Long::sum));
+          }
+        });
+    return counts;
+  }
+
+  private void scan(
+      ScanRequest request, String operation, Consumer<Map<String, AttributeValue>> consumer) {
+    Map<String, AttributeValue> startKey = null;
+    do {
+      ScanRequest page = request.clone().withExclusiveStartKey(startKey);
+      ScanResult result =
+          meterRegistry
+              .timer("dynamodb", "operation", operation)
+              .record(() -> amazonDynamoDB.scan(page));
+      result.getItems().forEach(consumer);
+      startKey = result.getLastEvaluatedKey();
+    } while (startKey != null && !startKey.isEmpty());
+  }
+
+  private double pendingSymbols() {
+    synchronized (lock) {
+      return pending.size();
+    }
+  }
+
+  private static void readCount(Map<String, AttributeValue> item, Map<String, Long> counts) {
+    long watchers = Long.parseLong(item.get("watchers").getN());
+    if (watchers > 0) {
+      counts.put(item.get("symbol").getS(), watchers);
+    }
+  }
+
+  private static Map<String, AttributeValue> key(String symbol) {
+    return Map.of("symbol", new AttributeValue(symbol));
+  }
+}
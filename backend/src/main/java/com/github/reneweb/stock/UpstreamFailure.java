@@ -0,0 +1,18 @@
+package com.github.reneweb.stock;
+
+import java.util.function.Predicate;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Decides which errors of the StockClient calls are retried and count as circuit breaker failures.
+ * Client errors such as an invalid symbol are the caller's fault, so they neither cost another
+ * upstream call nor open the breaker for everyone else.
+ */
+public class UpstreamFailure implements Predicate<Throwable> {
+
+  @Override
+  public boolean test(Throwable error) {
+    return !(error instanceof ResponseStatusException
+        && ((ResponseStatusException) error).getStatus().is4xxClientError());
+  }
+}
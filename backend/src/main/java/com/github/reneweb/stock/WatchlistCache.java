@@ -0,0 +1,106 @@
+package com.github.reneweb.stock;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Symbols of each watchlist, loaded from the table on the first read and updated in place by the
+ * changes made through this instance. Users without a watchlist are cached with an empty set.
+ */
+@Component
+public class WatchlistCache {
+
+  private final StockRepository stockRepository;
+  private final MeterRegistry meterRegistry;
+  private final Cache<String, Set<String>> cache;
+
+  @Autowired
+  public WatchlistCache(
+      StockRepository stockRepository,
+      MeterRegistry meterRegistry,
+      @Value("${watchlist.cache.maximum-size}") long maximumSize,
+      @Value("${watchlist.cache.ttl-seconds}") long ttlSeconds) {
+    this(
+        stockRepository,
+        meterRegistry,
+        maximumSize,
+        Duration.ofSeconds(ttlSeconds),
+        Ticker.systemTicker());
+  }
+
+  WatchlistCache(
+      StockRepository stockRepository,
+      MeterRegistry meterRegistry,
+      long maximumSize,
+      Duration ttl,
+      Ticker ticker) {
+    this.stockRepository = stockRepository;
+    this.meterRegistry = meterRegistry;
+    this.cache =
+        CaffeineCacheMetrics.monitor(
+            meterRegistry,
+            Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .recordStats()
+                .build(),
+            "watchlists");
+  }
+
+  public Set<String> get(String userId) {
+    return cache.get(userId, this::load);
+  }
+
+  /** Returns the cached symbols without loading them, null if they are not cached. */
+  public Set<String> getIfPresent(String userId) {
+    return cache.getIfPresent(userId);
+  }
+
+  public void put(String userId, Set<String> symbols) {
+    cache.put(userId, Collections.unmodifiableSet(new HashSet<>(symbols)));
+  }
+
+  public void added(String userId, String symbol) {
+    update(userId, symbol, true);
+  }
+
+  public void removed(String userId, String symbol) {
+    update(userId, symbol, false);
+  }
+
+  private void update(String userId, String symbol, boolean add) {
+    cache
+        .asMap()
+        .computeIfPresent(
+            userId,
+            (key, symbols) -> {
+              Set<String> updated = new HashSet<>(symbols);
+              if (add) {
+                updated.add(symbol);
+              } else {
+                updated.remove(symbol);
+              }
+              return Collections.unmodifiableSet(updated);
+            });
+  }
+
+  private Set<String> load(String userId) {
+    return meterRegistry
+        .timer("dynamodb", "operation", "findById")
+        .record(() -> stockRepository.findById(userId))
+        .map(StockWatchlistEntity::getSymbols)
+        .<Set<String>>map(symbols -> Collections.unmodifiableSet(new HashSet<>(symbols)))
+        .orElse(Set.of());
+  }
+}
@@ -0,0 +1,270 @@
+package com.github.reneweb.stock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only log of accepted watchlist changes. While a flush is running, its entries are kept in
+ * a separate segment that is deleted once they are written to the table.
+ *
+ * <p>Appending does not force the entries to disk, {@link #sync(long)} does. Concurrent writers
+ * waiting for a sync share a single force of the file.
+ */
+final class WatchlistJournal implements Closeable {
+
+  private final Path path;
+  private final Path flushing;
+  private final Object syncLock = new Object();
+  private final AtomicLong durable = new AtomicLong();
+  private FileChannel channel;
+  private long written;
+
+  WatchlistJournal(Path path) throws IOException {
+    this.path = path;
+    this.flushing = path.resolveSibling(path.getFileName() + ".flushing");
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    this.channel = open(path);
+  }
+
+  /** Reads the entries of an interrupted flush followed by the current ones. */
+  List<Entry> replay() throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    for (Path segment : List.of(flushing, path)) {
+      if (Files.exists(segment)) {
+        String[] lines =
+            new String(Files.readAllBytes(segment), StandardCharsets.UTF_8).split("\n", -1);
+        // The last element is empty, or a line cut off by a crash that was never acknowledged
+        for (int i = 0; i < lines.length - 1; i++) {
+          Entry entry = Entry.parse(lines[i]);
+          if (entry != null) {
+            entries.add(entry);
+          }
+        }
+      }
+    }
+    return entries;
+  }
+
+  /** Replaces both segments with the given entries. */
+  synchronized void rewrite(List<Entry> entries) throws IOException {
+    Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel out =
+        FileChannel.open(
+            tmp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      write(out, entries);
+      out.force(false);
+    }
+    close();
+    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    Files.deleteIfExists(flushing);
+    channel = open(path);
+  }
+
+  /** Appends the entries and returns the sequence to {@link #sync(long)} them with. */
+  synchronized long append(List<Entry> entries) throws IOException {
+    write(channel, entries);
+    return ++written;
+  }
+
+  /** Forces everything up to the sequence to disk, unless another writer already did. */
+  void sync(long sequence) throws IOException {
+    synchronized (syncLock) {
+      if (durable.get() >= sequence) {
+        return;
+      }
+      FileChannel current;
+      long target;
+      synchronized (this) {
+        current = channel;
+        target = written;
+      }
+      try {
+        current.force(false);
+      } catch (ClosedChannelException e) {
+        // Replaced by a new segment, which forces the old one before closing it
+      }
+      durable.accumulateAndGet(target, Math::max);
+    }
+  }
+
+  /**
+   * Starts a new segment. The previous one is kept until {@link #completeFlush()}, and appended to
+   * the segment of an earlier flush that did not complete.
+   */
+  synchronized void startFlush() throws IOException {
+    close();
+    if (Files.exists(flushing)) {
+      byte[] current = Files.readAllBytes(path);
+      try (FileChannel out =
+          FileChannel.open(flushing, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        long size = out.size();
+        // Do not let a line cut off by a failed write swallow the first appended entry
+        if (size > 0 && !endsWithNewline(out, size)) {
+          writeFully(out, ByteBuffer.wrap(new byte[] {'\n'}), size++);
+        }
+        writeFully(out, ByteBuffer.wrap(current), size);
+        out.force(false);
+      }
+      Files.delete(path);
+    } else {
+      Files.move(path, flushing, StandardCopyOption.ATOMIC_MOVE);
+    }
+    channel = open(path);
+  }
+
+  synchronized void completeFlush() throws IOException {
+    Files.deleteIfExists(flushing);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel.isOpen()) {
+      channel.force(false);
+      durable.accumulateAndGet(written, Math::max);
+      channel.close();
+    }
+  }
+
+  private static void write(FileChannel out, List<Entry> entries) throws IOException {
+    StringBuilder lines = new StringBuilder();
+    for (Entry entry : entries) {
+      lines.append(entry).append('\n');
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+
+  private static void writeFully(FileChannel out, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += out.write(buffer, position);
+    }
+  }
+
+  private static boolean endsWithNewline(FileChannel in, long size) throws IOException {
+    ByteBuffer last = ByteBuffer.allocate(1);
+    in.read(last, size - 1);
+    return last.get(0) == '\n';
+  }
+
+  private static FileChannel open(Path path) throws IOException {
+    return FileChannel.open(
+        path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  static final class Entry {
+    private final String userId;
+    private final String symbol;
+    private final boolean add;
+
+    Entry(String userId, String symbol, boolean add) {
+      this.userId = userId;
+      this.symbol = symbol;
+      this.add = add;
+    }
+
+    String getUserId() {
+      return userId;
+    }
+
+    String getSymbol() {
+      return symbol;
+    }
+
+    boolean isAdd() {
+      return add;
+    }
+
+    private static Entry parse(String line) {
+      String[] fields = line.split("\t", -1);
+      if (fields.length != 3 || !(fields[0].equals("A") || fields[0].equals("R"))) {
+        return null;
+      }
+      String userId = unescape(fields[1]);
+      String symbol = unescape(fields[2]);
+      if (userId == null || symbol == null) {
+        return null;
+      }
+      return new Entry(userId, symbol, fields[0].equals("A"));
+    }
+
+    /** Tabs and line breaks in the fields are escaped, so every line is exactly one entry. */
+    @Override
+    public String toString() {
+      return (add ? "A" : "R") + "\t" + escape(userId) + "\t" + escape(symbol);
+    }
+
+    private static String escape(String field) {
+      StringBuilder escaped = new StringBuilder(field.length());
+      for (char c : field.toCharArray()) {
+        switch (c) {
+          case '\\':
+            escaped.append("\\\\");
+            break;
+          case '\t':
+            escaped.append("\\t");
+            break;
+          case '\n':
+            escaped.append("\\n");
+            break;
+          case '\r':
+            escaped.append("\\r");
+            break;
+          default:
+            escaped.append(c);
+        }
+      }
+      return escaped.toString();
+    }
+
+    /** Returns null for an invalid escape. */
+    private static String unescape(String field) {
+      StringBuilder unescaped = new StringBuilder(field.length());
+      for (int i = 0; i < field.length(); i++) {
+        char c = field.charAt(i);
+        if (c != '\\') {
+          unescaped.append(c);
+          continue;
+        }
+        if (++i == field.length()) {
+          return null;
+        }
+        switch (field.charAt(i)) {
+          case '\\':
+            unescaped.append('\\');
+            break;
+          case 't':
+            unescaped.append('\t');
+            break;
+          case 'n':
+            unescaped.append('\n');
+            break;
+          case 'r':
+            unescaped.append('\r');
+            break;
+          default:
+            return null;
+        }
+      }
+      return unescaped.toString();
+    }
+  }
+}
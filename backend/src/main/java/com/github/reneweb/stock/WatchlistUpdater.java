@@ -0,0 +1,122 @@
+package com.github.reneweb.stock;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Changes the symbols of a watchlist with single UpdateItem calls, so concurrent edits of the same
+ * watchlist do not overwrite each other. Only changes that actually changed the list are counted in
+ * {@link SymbolWatchers}.
+ */
+@Component
+@ConditionalOnProperty(
+    name = "watchlist.write-behind.enabled",
+    havingValue = "false",
+    matchIfMissing = true)
+public class WatchlistUpdater implements WatchlistWriter {
+  private static final String TABLE = "Watchlist";
+
+  private final AmazonDynamoDB amazonDynamoDB;
+  private final SymbolWatchers symbolWatchers;
+  private final MeterRegistry meterRegistry;
+
+  @Autowired
+  public WatchlistUpdater(
+      AmazonDynamoDB amazonDynamoDB, SymbolWatchers symbolWatchers, MeterRegistry meterRegistry) {
+    this.amazonDynamoDB = amazonDynamoDB;
+    this.symbolWatchers = symbolWatchers;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /** Adds the symbol, creating the watchlist if needed. */
+  @Override
+  public void addSymbol(String userId, String symbol) {
+    UpdateItemRequest request =
+        new UpdateItemRequest()
+            .withTableName(TABLE)
+            .withKey(key(userId))
+            .withUpdateExpression("ADD symbols :symbols")
+            .withConditionExpression(
+                "attribute_not_exists(symbols) OR NOT contains(symbols, :symbol)")
+            .withExpressionAttributeValues(values(symbol))
+            .withReturnValues(ReturnValue.NONE);
+
+    try {
+      meterRegistry
+          .timer("dynamodb", "operation", "addSymbol")
+          .record(() -> amazonDynamoDB.updateItem(request));
+    } catch (ConditionalCheckFailedException e) {
+      // Already in the watchlist
+      return;
+    }
+    symbolWatchers.added(userId, symbol);
+  }
+
+  /**
+   * Removes the symbol. The watchlist is deleted once it is empty, unless another symbol was added
+   * in the meantime.
+   */
+  @Override
+  public void removeSymbol(String userId, String symbol) {
+    UpdateItemRequest request =
+        new UpdateItemRequest()
+            .withTableName(TABLE)
+            .withKey(key(userId))
+            .withUpdateExpression("DELETE symbols :symbols")
+            .withConditionExpression("contains(symbols, :symbol)")
+            .withExpressionAttributeValues(values(symbol))
+            .withReturnValues(ReturnValue.ALL_NEW);
+
+    UpdateItemResult result;
+    try {
+      result =
+          meterRegistry
+              .timer("dynamodb", "operation", "removeSymbol")
+              .record(() -> amazonDynamoDB.updateItem(request));
+    } catch (ConditionalCheckFailedException e) {
+      // No such watchlist or symbol
+      return;
+    }
+    symbolWatchers.removed(userId, symbol);
+
+    Map<String, AttributeValue> item = result.getAttributes();
+    if (item == null || !item.containsKey("symbols")) {
+      deleteIfEmpty(userId);
+    }
+  }
+
+  private void deleteIfEmpty(String userId) {
+    DeleteItemRequest request =
+        new DeleteItemRequest()
+            .withTableName(TABLE)
+            .withKey(key(userId))
+            .withConditionExpression("attribute_not_exists(symbols)");
+
+    try {
+      meterRegistry
+          .timer("dynamodb", "operation", "deleteIfEmpty")
+          .record(() -> amazonDynamoDB.deleteItem(request));
+    } catch (ConditionalCheckFailedException e) {
+      // A symbol was added concurrently, keep the watchlist
+    }
+  }
+
+  private static Map<String, AttributeValue> key(String userId) {
+    return Map.of("userId", new AttributeValue(userId));
+  }
+
+  private static Map<String, AttributeValue> values(String symbol) {
+    return Map.of(
+        ":symbols", new AttributeValue().withSS(symbol), ":symbol", new AttributeValue(symbol));
+  }
+}
@@ -0,0 +1,361 @@
+package com.github.reneweb.stock;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Buffers watchlist changes and writes them with UpdateItem. Changes are journaled to a local file
+ * before they are acknowledged and replayed on startup. Multiple changes of the same user within a
+ * flush interval result in a single write, or two if symbols were both added and removed.
+ *
+ * <p>Concurrent changes share one sync of the journal. A change that failed to sync is reported as
+ * failed but may still be written, which is harmless as adding and removing symbols is idempotent.
+ */
+@Component
+@ConditionalOnProperty(name = "watchlist.write-behind.enabled", havingValue = "true")
+public class WatchlistWriteBehind implements WatchlistWriter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(WatchlistWriteBehind.class);
+  private static final String TABLE = "Watchlist";
+
+  private final AmazonDynamoDB amazonDynamoDB;
+  private final SymbolWatchers symbolWatchers;
+  private final MeterRegistry meterRegistry;
+  private final WatchlistJournal journal;
+  private final int maxPendingUsers;
+  private final int maxRetries;
+  private final long retryBackoffMillis;
+  private final Object lock = new Object();
+  private final Object flushLock = new Object();
+
+  // Per user the last change of each symbol, true if it was added
+  private Map<String, Map<String, Boolean>> pending = new LinkedHashMap<>();
+  private Map<String, Map<String, Boolean>> flushing = Map.of();
+
+  @Autowired
+  public WatchlistWriteBehind(
+      AmazonDynamoDB amazonDynamoDB,
+      SymbolWatchers symbolWatchers,
+      MeterRegistry meterRegistry,
+      @Value("${watchlist.write-behind.journal}") String journalPath,
+      @Value("${watchlist.write-behind.max-pending-users}") int maxPendingUsers,
+      @Value("${watchlist.write-behind.max-retries}") int maxRetries,
+      @Value("${watchlist.write-behind.retry-backoff-ms}") long retryBackoffMillis) {
+    this.amazonDynamoDB = amazonDynamoDB;
+    this.symbolWatchers = symbolWatchers;
+    this.meterRegistry = meterRegistry;
+    this.maxPendingUsers = maxPendingUsers;
+    this.maxRetries = maxRetries;
+    this.retryBackoffMillis = retryBackoffMillis;
+
+    try {
+      this.journal = new WatchlistJournal(Paths.get(journalPath));
+      List<WatchlistJournal.Entry> entries = journal.replay();
+      entries.forEach(entry -> apply(pending, entry));
+      journal.rewrite(toEntries(pending));
+      if (!entries.isEmpty()) {
+        LOGGER.info("Replayed {} watchlist changes from {}", entries.size(), journalPath);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    Gauge.builder("watchlist.writebehind.pending", this, WatchlistWriteBehind::pendingUsers)
+        .register(meterRegistry);
+  }
+
+  @Override
+  public void addSymbol(String userId, String symbol) {
+    submit(new WatchlistJournal.Entry(userId, symbol, true));
+  }
+
+  @Override
+  public void removeSymbol(String userId, String symbol) {
+    submit(new WatchlistJournal.Entry(userId, symbol, false));
+  }
+
+  @Override
+  public Set<String> withPendingChanges(String userId, Set<String> symbols) {
+    synchronized (lock) {
+      Map<String, Boolean> inFlight = flushing.get(userId);
+      Map<String, Boolean> queued = pending.get(userId);
+      if (inFlight == null && queued == null) {
+        return symbols;
+      }
+      Set<String> result = new HashSet<>(symbols);
+      applyTo(result, inFlight);
+      applyTo(result, queued);
+      return result;
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${watchlist.write-behind.flush-interval-ms}")
+  public void flush() {
+    synchronized (flushLock) {
+      Map<String, Map<String, Boolean>> batch;
+      synchronized (lock) {
+        if (pending.isEmpty()) {
+          return;
+        }
+        batch = pending;
+        pending = new LinkedHashMap<>();
+        flushing = batch;
+        try {
+          journal.startFlush();
+        } catch (IOException e) {
+          LOGGER.warn("Could not rotate the watchlist journal, retrying with the next flush", e);
+          pending = batch;
+          flushing = Map.of();
+          return;
+        }
+      }
+
+      Map<String, Map<String, Boolean>> failed = write(batch);
+
+      synchronized (lock) {
+        List<WatchlistJournal.Entry> requeued = new ArrayList<>();
+        failed.forEach(
+            (userId, changes) ->
+                changes.forEach(
+                    (symbol, add) -> {
+                      Map<String, Boolean> queued =
+                          pending.computeIfAbsent(userId, key -> new LinkedHashMap<>());
+                      if (queued.putIfAbsent(symbol, add) == null) {
+                        requeued.add(new WatchlistJournal.Entry(userId, symbol, add));
+                      }
+                    }));
+        flushing = Map.of();
+        try {
+          journal.sync(journal.append(requeued));
+          journal.completeFlush();
+        } catch (IOException e) {
+          LOGGER.warn("Could not complete the watchlist journal flush", e);
+        }
+      }
+
+      meterRegistry
+          .counter("watchlist.writebehind", "outcome", "written")
+          .increment(batch.size() - failed.size());
+      meterRegistry
+          .counter("watchlist.writebehind", "outcome", "requeued")
+          .increment(failed.size());
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() throws IOException {
+    flush();
+    journal.close();
+  }
+
+  private void submit(WatchlistJournal.Entry entry) {
+    try {
+      long sequence;
+      synchronized (lock) {
+        if (!pending.containsKey(entry.getUserId()) && pending.size() >= maxPendingUsers) {
+          meterRegistry.counter("watchlist.writebehind", "outcome", "rejected").increment();
+          throw new ResponseStatusException(
+              HttpStatus.SERVICE_UNAVAILABLE, "Too many pending watchlist changes");
+        }
+        sequence = journal.append(List.of(entry));
+        apply(pending, entry);
+      }
+      journal.sync(sequence);
+    } catch (IOException e) {
+      throw new ResponseStatusException(
+          HttpStatus.INTERNAL_SERVER_ERROR, "Error while saving watchlist change", e);
+    }
+  }
+
+  /**
+   * Writes the batch and returns the changes that could not be written. Each watchlist is changed
+   * with UpdateItem, so changes written by other instances are kept. The watcher counts of the
+   * symbols are changed by what actually changed in the written watchlists.
+   */
+  private Map<String, Map<String, Boolean>> write(Map<String, Map<String, Boolean>> batch) {
+    Map<String, Map<String, Boolean>> failed = new HashMap<>();
+    List<WatchlistJournal.Entry> watchers = new ArrayList<>();
+    batch.forEach(
+        (userId, changes) -> {
+          if (!write(userId, changes, watchers)) {
+            failed.put(userId, changes);
+          }
+        });
+    symbolWatchers.record(watchers);
+    return failed;
+  }
+
+  /** Adds the symbols that were actually added or removed to watchers. */
+  private boolean write(
+      String userId, Map<String, Boolean> changes, List<WatchlistJournal.Entry> watchers) {
+    Set<String> added = new HashSet<>();
+    Set<String> removed = new HashSet<>();
+    changes.forEach((symbol, add) -> (add ? added : removed).add(symbol));
+
+    // ADD and DELETE of the same attribute cannot be combined in one update expression
+    if (!added.isEmpty()) {
+      UpdateItemResult result =
+          update(
+              new UpdateItemRequest()
+                  .withTableName(TABLE)
+                  .withKey(key(userId))
+                  .withUpdateExpression("ADD symbols :symbols")
+                  .withExpressionAttributeValues(
+                      Map.of(":symbols", new AttributeValue().withSS(added)))
+                  .withReturnValues(ReturnValue.UPDATED_OLD));
+      if (result == null) {
+        return false;
+      }
+      Set<String> before = symbols(result);
+      added.stream()
+          .filter(symbol -> !before.contains(symbol))
+          .forEach(symbol -> watchers.add(new WatchlistJournal.Entry(userId, symbol, true)));
+    }
+
+    if (!removed.isEmpty()) {
+      UpdateItemResult result =
+          update(
+              new UpdateItemRequest()
+                  .withTableName(TABLE)
+                  .withKey(key(userId))
+                  .withUpdateExpression("DELETE symbols :symbols")
+                  .withConditionExpression("attribute_exists(symbols)")
+                  .withExpressionAttributeValues(
+                      Map.of(":symbols", new AttributeValue().withSS(removed)))
+                  .withReturnValues(ReturnValue.UPDATED_OLD));
+      if (result == null) {
+        return false;
+      }
+      Set<String> before = symbols(result);
+      removed.stream()
+          .filter(before::contains)
+          .forEach(symbol -> watchers.add(new WatchlistJournal.Entry(userId, symbol, false)));
+      if (!before.isEmpty() && removed.containsAll(before)) {
+        deleteIfEmpty(userId);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns null if the update could not be written, and an empty result if its condition failed.
+   */
+  private UpdateItemResult update(UpdateItemRequest request) {
+    for (int attempt = 0; attempt <= maxRetries; attempt++) {
+      backoff(attempt);
+      try {
+        return meterRegistry
+            .timer("dynamodb", "operation", "updateWatchlist")
+            .record(() -> amazonDynamoDB.updateItem(request));
+      } catch (ConditionalCheckFailedException e) {
+        return new UpdateItemResult();
+      } catch (RuntimeException e) {
+        LOGGER.warn("Writing watchlist changes failed", e);
+      }
+    }
+    return null;
+  }
+
+  /** Deletes the watchlist unless a symbol was added concurrently. */
+  private void deleteIfEmpty(String userId) {
+    DeleteItemRequest request =
+        new DeleteItemRequest()
+            .withTableName(TABLE)
+            .withKey(key(userId))
+            .withConditionExpression("attribute_not_exists(symbols)");
+
+    try {
+      meterRegistry
+          .timer("dynamodb", "operation", "deleteIfEmpty")
+          .record(() -> amazonDynamoDB.deleteItem(request));
+    } catch (ConditionalCheckFailedException e) {
+      // A symbol was added concurrently, keep the watchlist
+    } catch (RuntimeException e) {
+      LOGGER.warn("Deleting the empty watchlist of {} failed", userId, e);
+    }
+  }
+
+  private static Set<String> symbols(UpdateItemResult result) {
+    Map<String, AttributeValue> item = result.getAttributes();
+    if (item == null || !item.containsKey("symbols")) {
+      return Set.of();
+    }
+    return new HashSet<>(item.get("symbols").getSS());
+  }
+
+  private static Map<String, AttributeValue> key(String userId) {
+    return Map.of("userId", new AttributeValue(userId));
+  }
+
+  private void backoff(int attempt) {
+    if (attempt == 0 || retryBackoffMillis <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(retryBackoffMillis << Math.min(attempt - 1, 10));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private double pendingUsers() {
+    synchronized (lock) {
+      return pending.size();
+    }
+  }
+
+  private static void apply(
+      Map<String, Map<String, Boolean>> changes, WatchlistJournal.Entry entry) {
+    Map<String, Boolean> symbols =
+        changes.computeIfAbsent(entry.getUserId(), key -> new LinkedHashMap<>());
+    symbols.put(entry.getSymbol(), entry.isAdd());
+  }
+
+  private static void applyTo(Set<String> symbols, Map<String, Boolean> changes) {
+    if (changes != null) {
+      changes.forEach(
+          (symbol, add) -> {
+            if (add) {
+              symbols.add(symbol);
+            } else {
+              symbols.remove(symbol);
+            }
+          });
+    }
+  }
+
+  private static List<WatchlistJournal.Entry> toEntries(Map<String, Map<String, Boolean>> changes) {
+    List<WatchlistJournal.Entry> entries = new ArrayList<>();
+    changes.forEach(
+        (userId, symbols) ->
+            symbols.forEach(
+                (symbol, add) -> entries.add(new WatchlistJournal.Entry(userId, symbol, add))));
+    return entries;
+  }
+}
@@ -0,0 +1,16 @@
+package com.github.reneweb.stock;
+
+import java.util.Set;
+
+/** Persists changes to the symbols of a watchlist. */
+public interface WatchlistWriter {
+
+  void addSymbol(String userId, String symbol);
+
+  void removeSymbol(String userId, String symbol);
+
+  /** Applies changes that were accepted but are not yet visible in the table. */
+  default Set<String> withPendingChanges(String userId, Set<String> symbols) {
+    return symbols;
+  }
+}
@@ -8,8 +8,15 @@ import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.local.main.ServerRunner;
 import com.amazonaws.services.dynamodbv2.local.server.DynamoDBProxyServer;
+import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
 import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.amazonaws.services.dynamodbv2.model.ScalarAttributeType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.reneweb.stock.Stock;
 import com.github.reneweb.stock.StockWatchlistEntity;
@@ -40,6 +47,7 @@ import org.springframework.web.client.RestTemplate;
       "DYNAMODB_ENDPOINT=http://localhost:12000",
       "AWS_ACCESSKEY=aws_accesskey",
       "AWS_SECRETKEY=aws_secretkey",
+      "stock.refresh.enabled=false",
     },
     webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 public class MainIT {
@@ -62,7 +70,7 @@ public class MainIT {
   private String stockJson =
       "{"
           + "   \"Time Series (5min)\":{"
-          + "      \"time\":{"
+          + "      \"2020-05-01 16:00:00\":{"
           + "         \"1. open\":\"1\","
           + "         \"2. high\":\"2\","
           + "         \"3. low\":\"3\","
@@ -99,6 +107,25 @@ public class MainIT {
       tableRequest.setProvisionedThroughput(new ProvisionedThroughput(1L, 1L));
       amazonDynamoDB.createTable(tableRequest);
     }
+    if (!amazonDynamoDB.listTables().getTableNames().contains("WatchlistSymbols")) {
+      amazonDynamoDB.createTable(
+          new CreateTableRequest()
+              .withTableName("WatchlistSymbols")
+              .withKeySchema(new KeySchemaElement("symbol", KeyType.HASH))
+              .withAttributeDefinitions(
+                  new AttributeDefinition("symbol", ScalarAttributeType.S),
+                  new AttributeDefinition("ranking", ScalarAttributeType.S),
+                  new AttributeDefinition("watchers", ScalarAttributeType.N))
+              .withGlobalSecondaryIndexes(
+                  new GlobalSecondaryIndex()
+                      .withIndexName("watchers-index")
+                      .withKeySchema(
+                          new KeySchemaElement("ranking", KeyType.HASH),
+                          new KeySchemaElement("watchers", KeyType.RANGE))
+                      .withProjection(new Projection().withProjectionType(ProjectionType.KEYS_ONLY))
+                      .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L)))
+              .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L)));
+    }
   }
 
   @Test
@@ -2,47 +2,58 @@ package com.github.reneweb.facebook;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
-import java.util.Map;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
 
 @ExtendWith(MockitoExtension.class)
 class FBAccessTokenValidatorTest {
 
   private String appId = "myAppId";
-  private String appSecret = "myAppSecret";
+  private String userId = "myUserId";
+  private String userAccessToken = "myUserAccessToken";
+  private Instant now = Instant.parse("2020-05-01T12:00:00Z");
+  private AtomicLong ticker = new AtomicLong();
 
-  @Mock private RestTemplate restTemplate;
+  @Mock private FBGraphClient fbGraphClient;
+  @Mock private ReactiveFBGraphClient reactiveFBGraphClient;
 
   private FBAccessTokenValidator fbAccessTokenValidator;
 
   @BeforeEach
   public void setup() {
-    fbAccessTokenValidator = new FBAccessTokenValidator("myAppId", "myAppSecret", restTemplate);
+    fbAccessTokenValidator =
+        new FBAccessTokenValidator(
+            fbGraphClient,
+            reactiveFBGraphClient,
+            new SimpleMeterRegistry(),
+            10,
+            Duration.ofMinutes(10),
+            Clock.fixed(now, ZoneOffset.UTC),
+            ticker::get);
   }
 
   @Test
   public void shouldReturnFbDataIfCallSuccessful() {
-    String userAccessToken = "myUserAccessToken";
-    String userId = "myUserId";
-    String url =
-        "https://graph.facebook.com/debug_token?input_token={token}&access_token={appToken}";
-
     FBTokenData fbTokenData = new FBTokenData(appId, userId, false);
-    when(restTemplate.getForEntity(
-            url,
-            FBTokenData.class,
-            Map.of("token", userAccessToken, "appToken", String.format("%s|%s", appId, appSecret))))
-        .thenReturn(new ResponseEntity<>(fbTokenData, HttpStatus.OK));
+    when(fbGraphClient.debugToken(userAccessToken)).thenReturn(fbTokenData);
 
     FBTokenData tokenData = fbAccessTokenValidator.validate(userAccessToken);
     assertThat(tokenData.getUserId()).isEqualTo(userId);
@@ -52,20 +63,79 @@ class FBAccessTokenValidatorTest {
 
   @Test
   public void shouldThrowResponseExceptionIfCallUnsuccessful() {
-    String userAccessToken = "myUserAccessToken";
-    String userId = "myUserId";
-    String url =
-        "https://graph.facebook.com/debug_token?input_token={token}&access_token={appToken}";
-
     FBTokenData fbTokenData = new FBTokenData(appId, userId, true);
-    when(restTemplate.getForEntity(
-            url,
-            FBTokenData.class,
-            Map.of("token", userAccessToken, "appToken", String.format("%s|%s", appId, appSecret))))
-        .thenReturn(new ResponseEntity<>(fbTokenData, HttpStatus.OK));
+    when(fbGraphClient.debugToken(userAccessToken)).thenReturn(fbTokenData);
+
+    assertThatThrownBy(() -> fbAccessTokenValidator.validate(userAccessToken))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+  }
+
+  @Test
+  public void shouldThrowResponseExceptionIfGraphApiRejectsToken() {
+    when(fbGraphClient.debugToken(userAccessToken))
+        .thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
 
     assertThatThrownBy(() -> fbAccessTokenValidator.validate(userAccessToken))
         .isInstanceOf(ResponseStatusException.class)
         .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
   }
+
+  @Test
+  public void shouldServeValidatedTokenFromCache() {
+    FBTokenData fbTokenData = new FBTokenData(appId, userId, false);
+    when(fbGraphClient.debugToken(userAccessToken)).thenReturn(fbTokenData);
+
+    fbAccessTokenValidator.validate(userAccessToken);
+    FBTokenData tokenData = fbAccessTokenValidator.validate(userAccessToken);
+
+    assertThat(tokenData).isEqualTo(fbTokenData);
+    verify(fbGraphClient, times(1)).debugToken(userAccessToken);
+  }
+
+  @Test
+  public void shouldValidateAgainOnceTheTokenExpired() {
+    long expiresAt = now.plus(Duration.ofMinutes(1)).getEpochSecond();
+    FBTokenData fbTokenData = new FBTokenData(appId, userId, false, expiresAt);
+    when(fbGraphClient.debugToken(userAccessToken)).thenReturn(fbTokenData);
+
+    fbAccessTokenValidator.validate(userAccessToken);
+    ticker.addAndGet(Duration.ofMinutes(2).toNanos());
+    fbAccessTokenValidator.validate(userAccessToken);
+
+    verify(fbGraphClient, times(2)).debugToken(userAccessToken);
+  }
+
+  @Test
+  public void shouldValidateAgainAfterInvalidation() {
+    FBTokenData fbTokenData = new FBTokenData(appId, userId, false);
+    when(fbGraphClient.debugToken(userAccessToken)).thenReturn(fbTokenData);
+
+    fbAccessTokenValidator.validate(userAccessToken);
+    fbAccessTokenValidator.invalidate(userAccessToken);
+    fbAccessTokenValidator.validate(userAccessToken);
+
+    verify(fbGraphClient, times(2)).debugToken(userAccessToken);
+  }
+
+  @Test
+  public void shouldValidateAsynchronouslyAndShareTheCache() {
+    FBTokenData fbTokenData = new FBTokenData(appId, userId, false);
+    when(reactiveFBGraphClient.debugToken(userAccessToken)).thenReturn(Mono.just(fbTokenData));
+
+    assertThat(fbAccessTokenValidator.validateAsync(userAccessToken).block())
+        .isEqualTo(fbTokenData);
+    assertThat(fbAccessTokenValidator.validate(userAccessToken)).isEqualTo(fbTokenData);
+    verifyNoInteractions(fbGraphClient);
+  }
+
+  @Test
+  public void shouldFailAsynchronousValidationIfCallUnsuccessful() {
+    FBTokenData fbTokenData = new FBTokenData(appId, userId, true);
+    when(reactiveFBGraphClient.debugToken(userAccessToken)).thenReturn(Mono.just(fbTokenData));
+
+    assertThatThrownBy(() -> fbAccessTokenValidator.validateAsync(userAccessToken).block())
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+  }
 }
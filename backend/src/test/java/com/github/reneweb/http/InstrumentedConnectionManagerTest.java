@@ -0,0 +1,28 @@
+package com.github.reneweb.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.junit.jupiter.api.Test;
+
+class InstrumentedConnectionManagerTest {
+
+  @Test
+  public void shouldRecordTimeWaitedForConnection() throws Exception {
+    Timer waitTimer = new SimpleMeterRegistry().timer("httpclient.pool.wait");
+    InstrumentedConnectionManager connectionManager = new InstrumentedConnectionManager(waitTimer);
+    HttpRoute route = new HttpRoute(new HttpHost("localhost", 80, "http"));
+
+    HttpClientConnection connection =
+        connectionManager.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+    connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+    connectionManager.close();
+
+    assertThat(waitTimer.count()).isEqualTo(1);
+  }
+}
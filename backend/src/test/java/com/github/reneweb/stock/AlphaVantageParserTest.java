@@ -0,0 +1,80 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.server.ResponseStatusException;
+
+class AlphaVantageParserTest {
+  private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+  private final AlphaVantageParser parser = new AlphaVantageParser(objectMapper);
+
+  private final String stockJson =
+      "{\"Meta Data\":{\"1. Information\":\"Intraday (5min) open, high, low, close prices\","
+          + "\"2. Symbol\":\"MSFT\",\"6. Time Zone\":\"US/Eastern\"},"
+          + "\"Time Series (5min)\":{"
+          + "\"2020-05-01 16:00:00\":{\"1. open\":\"174.5900\",\"2. high\":\"174.8000\","
+          + "\"3. low\":\"174.4800\",\"4. close\":\"174.5700\",\"5. volume\":\"1017312\"},"
+          + "\"2020-05-01 15:55:00\":{\"1. open\":\"174.7100\",\"2. high\":\"174.9900\","
+          + "\"3. low\":\"174.2900\",\"4. close\":\"174.6000\",\"5. volume\":\"844551\"}}}";
+
+  @Test
+  public void shouldParseLikeDatabind() throws Exception {
+    Stock streamed = parser.parse(stockJson.getBytes(StandardCharsets.UTF_8));
+    Stock bound = objectMapper.readValue(stockJson, Stock.class);
+
+    assertThat(objectMapper.writeValueAsString(streamed))
+        .isEqualTo(objectMapper.writeValueAsString(bound));
+    assertThat(streamed.getSeries().size()).isEqualTo(2);
+    assertThat(streamed.getSeries().getClose(1)).isEqualTo(174.57);
+  }
+
+  @Test
+  public void shouldSkipUnknownFields() throws Exception {
+    Stock stock =
+        parser.parse(
+            "{\"Meta Data\":{\"nested\":[1,{\"a\":2}]},\"Other\":3,"
+                .concat(stockJson.substring(stockJson.indexOf("\"Time Series")))
+                .getBytes(StandardCharsets.UTF_8));
+
+    assertThat(stock.getSeries().size()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldRejectQuotaMessagesAsUnavailable() {
+    for (String field : List.of("Note", "Information")) {
+      assertThatThrownBy(
+              () ->
+                  parser.parse(
+                      ("{\"" + field + "\":\"Thank you for using Alpha Vantage!\"}")
+                          .getBytes(StandardCharsets.UTF_8)))
+          .isInstanceOf(ResponseStatusException.class)
+          .hasFieldOrPropertyWithValue("status", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+  }
+
+  @Test
+  public void shouldRejectResponsesWithoutBars() {
+    for (String body : List.of("{\"Meta Data\":{}}", "{\"Time Series (5min)\":{}}")) {
+      assertThatThrownBy(() -> parser.parse(body.getBytes(StandardCharsets.UTF_8)))
+          .isInstanceOf(ResponseStatusException.class)
+          .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_GATEWAY);
+    }
+  }
+
+  @Test
+  public void shouldRejectErrorMessageAsInvalidSymbol() {
+    assertThatThrownBy(
+            () ->
+                parser.parse(
+                    "{\"Error Message\":\"Invalid API call.\"}".getBytes(StandardCharsets.UTF_8)))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+  }
+}
@@ -0,0 +1,84 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+class AlphaVantageRateLimiterTest {
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicLong nanoTime = new AtomicLong();
+  private AlphaVantageRateLimiter rateLimiter;
+
+  @AfterEach
+  public void teardown() {
+    rateLimiter.shutdown();
+  }
+
+  @Test
+  public void shouldGrantPermitsWithinBurstImmediately() {
+    rateLimiter = createRateLimiter(60, 2, 1000);
+
+    assertThat(rateLimiter.acquireAsync(FetchPriority.BACKGROUND)).isDone();
+    assertThat(rateLimiter.acquireAsync(FetchPriority.BACKGROUND)).isDone();
+    assertThat(rateLimiter.acquireAsync(FetchPriority.BACKGROUND)).isNotDone();
+  }
+
+  @Test
+  public void shouldServeWaitingCallersByPriority() {
+    rateLimiter = createRateLimiter(60, 1, 10_000);
+    rateLimiter.acquire(FetchPriority.INTERACTIVE);
+
+    CompletableFuture<Void> background = rateLimiter.acquireAsync(FetchPriority.BACKGROUND);
+    CompletableFuture<Void> validation = rateLimiter.acquireAsync(FetchPriority.VALIDATION);
+    CompletableFuture<Void> interactive = rateLimiter.acquireAsync(FetchPriority.INTERACTIVE);
+    assertThat(meterRegistry.get("stock.ratelimit.queue").gauge().value()).isEqualTo(3);
+
+    nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    CompletableFuture<Void> trigger = rateLimiter.acquireAsync(FetchPriority.BACKGROUND);
+
+    assertThat(interactive).isDone();
+    assertThat(validation).isNotDone();
+    assertThat(background).isNotDone();
+    assertThat(trigger).isNotDone();
+
+    nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    rateLimiter.acquireAsync(FetchPriority.BACKGROUND);
+
+    assertThat(validation).isDone();
+    assertThat(background).isNotDone();
+  }
+
+  @Test
+  public void shouldRejectCallersWaitingTooLong() {
+    rateLimiter = createRateLimiter(1, 1, 50);
+    rateLimiter.acquire(FetchPriority.INTERACTIVE);
+
+    assertThatThrownBy(() -> rateLimiter.acquire(FetchPriority.BACKGROUND))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.SERVICE_UNAVAILABLE);
+    assertThat(meterRegistry.counter("stock.ratelimit.rejected", "priority", "BACKGROUND").count())
+        .isEqualTo(1);
+  }
+
+  private AlphaVantageRateLimiter createRateLimiter(
+      int callsPerMinute, int burst, long maxWaitMillis) {
+    return new AlphaVantageRateLimiter(
+        meterRegistry,
+        callsPerMinute,
+        burst,
+        maxWaitMillis,
+        nanoTime::get,
+        Executors.newSingleThreadScheduledExecutor());
+  }
+}
@@ -0,0 +1,101 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class DynamoDBSharedStockCacheTest {
+  @Mock private AmazonDynamoDB amazonDynamoDB;
+  @Mock private AmazonDynamoDBAsync amazonDynamoDBAsync;
+
+  private final Instant now = Instant.parse("2020-05-01T14:33:00Z");
+  private final StockSeries series =
+      StockSeries.builder()
+          .add(StockSeries.parseTimestamp("2020-05-01 10:25:00"), 1.5, 2, 1, 1.75, 100)
+          .priceScale(2)
+          .build();
+  private DynamoDBSharedStockCache sharedStockCache;
+
+  @BeforeEach
+  public void setup() {
+    sharedStockCache =
+        new DynamoDBSharedStockCache(
+            amazonDynamoDB,
+            amazonDynamoDBAsync,
+            new SimpleMeterRegistry(),
+            Clock.fixed(now, ZoneOffset.UTC));
+  }
+
+  @Test
+  public void shouldPutBinarySeriesWithExpiry() {
+    sharedStockCache.put("AAPL", new Stock(series), Instant.parse("2020-05-01T14:35:00Z"));
+
+    ArgumentCaptor<PutItemRequest> captor = ArgumentCaptor.forClass(PutItemRequest.class);
+    verify(amazonDynamoDBAsync).putItemAsync(captor.capture(), any());
+    Map<String, AttributeValue> item = captor.getValue().getItem();
+    assertThat(captor.getValue().getTableName()).isEqualTo("StockCache");
+    assertThat(item.get("symbol").getS()).isEqualTo("AAPL");
+    assertThat(item.get("expiresAt").getN()).isEqualTo("1588343700");
+    assertThat(StockSeriesCodec.decode(item.get("series").getB().array()).getClose(0))
+        .isEqualTo(1.75);
+  }
+
+  @Test
+  public void shouldGetUnexpiredStock() {
+    when(amazonDynamoDB.getItem(any(GetItemRequest.class))).thenReturn(result(now.plusSeconds(1)));
+
+    Stock stock = sharedStockCache.get("AAPL");
+
+    assertThat(stock.getSeries().getClose(0)).isEqualTo(1.75);
+    assertThat(stock.getSeries().getPriceScale()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldIgnoreExpiredItemsNotYetDeleted() {
+    when(amazonDynamoDB.getItem(any(GetItemRequest.class))).thenReturn(result(now));
+
+    assertThat(sharedStockCache.get("AAPL")).isNull();
+  }
+
+  @Test
+  public void shouldTreatFailuresAsMiss() {
+    when(amazonDynamoDB.getItem(any(GetItemRequest.class)))
+        .thenThrow(new AmazonServiceException("Throttled"));
+
+    assertThat(sharedStockCache.get("AAPL")).isNull();
+  }
+
+  private GetItemResult result(Instant expiresAt) {
+    return new GetItemResult()
+        .withItem(
+            Map.of(
+                "symbol",
+                new AttributeValue("AAPL"),
+                "series",
+                new AttributeValue().withB(ByteBuffer.wrap(StockSeriesCodec.encode(series))),
+                "expiresAt",
+                new AttributeValue().withN(Long.toString(expiresAt.getEpochSecond()))));
+  }
+}
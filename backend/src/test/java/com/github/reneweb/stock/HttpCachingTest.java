@@ -0,0 +1,36 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class HttpCachingTest {
+
+  @Test
+  public void shouldNegotiateGzip() {
+    assertThat(HttpCaching.acceptsGzip("gzip, deflate, br")).isTrue();
+    assertThat(HttpCaching.acceptsGzip("deflate, GZIP;q=0.5")).isTrue();
+    assertThat(HttpCaching.acceptsGzip("*")).isTrue();
+    assertThat(HttpCaching.acceptsGzip("*, gzip;q=0")).isFalse();
+    assertThat(HttpCaching.acceptsGzip("gzip;q=0.0")).isFalse();
+    assertThat(HttpCaching.acceptsGzip("identity")).isFalse();
+    assertThat(HttpCaching.acceptsGzip(null)).isFalse();
+  }
+
+  @Test
+  public void shouldDeriveETagFromNormalizedSymbol() {
+    Stock stock =
+        new Stock(
+            StockSeries.builder()
+                .add(StockSeries.parseTimestamp("2020-05-01 15:55:00"), 1, 2, 1, 2, 10)
+                .build());
+
+    assertThat(HttpCaching.eTag("aapl", stock, 1)).isEqualTo(HttpCaching.eTag("AAPL", stock, 1));
+    assertThat(HttpCaching.eTag("aapl", stock, 1)).isNotEqualTo(HttpCaching.eTag("MSFT", stock, 1));
+  }
+
+  @Test
+  public void shouldDeriveGzipETag() {
+    assertThat(HttpCaching.gzipETag("\"abc\"")).isEqualTo("\"abc-gzip\"");
+  }
+}
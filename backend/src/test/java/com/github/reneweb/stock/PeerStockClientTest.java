@@ -0,0 +1,129 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class PeerStockClientTest {
+  private final SymbolOwnership symbolOwnership =
+      new SymbolOwnership("http://a:8080", "http://a:8080,http://b:8080", 100);
+  private final StockSeries series =
+      StockSeries.builder()
+          .add(StockSeries.parseTimestamp("2020-05-01 16:00:00"), 1, 2, 0.5, 1.5, 100)
+          .priceScale(1)
+          .build();
+  private final AtomicReference<URI> requestedUri = new AtomicReference<>();
+  private final AtomicReference<String> requestedSecret = new AtomicReference<>();
+  private final AtomicReference<HttpStatus> status = new AtomicReference<>(HttpStatus.OK);
+  private MeterRegistry meterRegistry;
+  private PeerStockClient peerStockClient;
+  private String remoteSymbol;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    peerStockClient =
+        new PeerStockClient(
+            symbolOwnership,
+            meterRegistry,
+            WebClient.builder()
+                .exchangeFunction(
+                    request -> {
+                      requestedUri.set(request.url());
+                      requestedSecret.set(
+                          request.headers().getFirst(PeerStockClient.SECRET_HEADER));
+                      return Mono.just(
+                          ClientResponse.create(status.get())
+                              .header(
+                                  HttpHeaders.CONTENT_TYPE,
+                                  MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                              .body(
+                                  Flux.just(
+                                      new DefaultDataBufferFactory()
+                                          .wrap(StockSeriesCodec.encode(series))))
+                              .build());
+                    }),
+            1000,
+            500,
+            "secret");
+    remoteSymbol = "SYM0";
+    for (int i = 0; symbolOwnership.isOwner(remoteSymbol); i++) {
+      remoteSymbol = "SYM" + i;
+    }
+  }
+
+  @Test
+  public void shouldReadStockFromOwner() {
+    Stock stock = peerStockClient.fetchFromOwner(remoteSymbol, FetchPriority.BACKGROUND).block();
+
+    assertThat(stock.getSeries().getClose(0)).isEqualTo(1.5);
+    assertThat(requestedUri.get().toString())
+        .isEqualTo("http://b:8080/internal/stocks/" + remoteSymbol + "?priority=BACKGROUND");
+    assertThat(requestedSecret.get()).isEqualTo("secret");
+    assertThat(meterRegistry.counter("stock.forward", "outcome", "success").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotForwardOwnedSymbols() {
+    String ownedSymbol = "SYM0";
+    for (int i = 0; !symbolOwnership.isOwner(ownedSymbol); i++) {
+      ownedSymbol = "SYM" + i;
+    }
+
+    assertThat(peerStockClient.fetchFromOwner(ownedSymbol, FetchPriority.INTERACTIVE).block())
+        .isNull();
+    assertThat(requestedUri.get()).isNull();
+  }
+
+  @Test
+  public void shouldCompleteEmptyIfOwnerFails() {
+    status.set(HttpStatus.SERVICE_UNAVAILABLE);
+
+    assertThat(peerStockClient.fetchFromOwner(remoteSymbol, FetchPriority.INTERACTIVE).block())
+        .isNull();
+    assertThat(meterRegistry.counter("stock.forward", "outcome", "failure").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldReportInvalidSymbol() {
+    status.set(HttpStatus.BAD_REQUEST);
+
+    assertThatThrownBy(
+            () -> peerStockClient.fetchFromOwner(remoteSymbol, FetchPriority.INTERACTIVE).block())
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+  }
+
+  @Test
+  public void shouldRequireSecretForCluster() {
+    assertThatThrownBy(
+            () ->
+                new PeerStockClient(
+                    symbolOwnership, meterRegistry, WebClient.builder(), 1000, 500, ""))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void shouldRequireTimeoutAboveOwnerMaxWait() {
+    assertThatThrownBy(
+            () ->
+                new PeerStockClient(
+                    symbolOwnership, meterRegistry, WebClient.builder(), 5000, 5000, "secret"))
+        .isInstanceOf(IllegalStateException.class);
+  }
+}
@@ -0,0 +1,64 @@
+package com.github.reneweb.stock;
+
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+@ExtendWith(MockitoExtension.class)
+class PeerStockControllerTest {
+  @Mock private StockService stockService;
+
+  private final StockSeries series =
+      StockSeries.builder()
+          .add(StockSeries.parseTimestamp("2020-05-01 16:00:00"), 1, 2, 0.5, 1.5, 100)
+          .priceScale(1)
+          .build();
+
+  @Test
+  public void shouldServeOwnedStockWithRequestedPriority() throws Exception {
+    when(stockService.getOwnedStock("AAPL", FetchPriority.BACKGROUND))
+        .thenReturn(new Stock(series));
+    MockMvc mockMvc =
+        MockMvcBuilders.standaloneSetup(new PeerStockController(stockService, "secret")).build();
+
+    mockMvc
+        .perform(
+            get("/internal/stocks/AAPL")
+                .param("priority", "BACKGROUND")
+                .header(PeerStockClient.SECRET_HEADER, "secret"))
+        .andExpect(status().isOk())
+        .andExpect(content().bytes(StockSeriesCodec.encode(series)));
+  }
+
+  @Test
+  public void shouldHideEndpointWithoutMatchingSecret() throws Exception {
+    MockMvc mockMvc =
+        MockMvcBuilders.standaloneSetup(new PeerStockController(stockService, "secret")).build();
+
+    mockMvc.perform(get("/internal/stocks/AAPL")).andExpect(status().isNotFound());
+    mockMvc
+        .perform(get("/internal/stocks/AAPL").header(PeerStockClient.SECRET_HEADER, "guess"))
+        .andExpect(status().isNotFound());
+    verifyNoInteractions(stockService);
+  }
+
+  @Test
+  public void shouldHideEndpointWithoutConfiguredSecret() throws Exception {
+    MockMvc mockMvc =
+        MockMvcBuilders.standaloneSetup(new PeerStockController(stockService, "")).build();
+
+    mockMvc
+        .perform(get("/internal/stocks/AAPL").header(PeerStockClient.SECRET_HEADER, ""))
+        .andExpect(status().isNotFound());
+    verifyNoInteractions(stockService);
+  }
+}
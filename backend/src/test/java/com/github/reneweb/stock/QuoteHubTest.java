@@ -0,0 +1,239 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.server.ResponseStatusException;
+
+@ExtendWith(MockitoExtension.class)
+class QuoteHubTest {
+  @Mock private StockFetcher stockFetcher;
+
+  private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private MeterRegistry meterRegistry;
+  private QuoteHub quoteHub;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    quoteHub = new QuoteHub(stockFetcher, objectMapper, meterRegistry, tasks::add, 1, 10);
+  }
+
+  @Test
+  public void shouldSendSnapshotsAndSkipInvalidSymbols() {
+    Map<String, StockResult> results = new LinkedHashMap<>();
+    results.put("AAPL", StockResult.success(barsUntil("2020-05-01 15:55:00")));
+    results.put("XXX", StockResult.failure(HttpStatus.BAD_REQUEST, "Invalid stock symbol"));
+    results.put("MSFT", StockResult.failure(HttpStatus.GATEWAY_TIMEOUT, "Timed out"));
+    when(stockFetcher.fetchResults(List.of("AAPL", "XXX", "MSFT"))).thenReturn(results);
+    RecordingSink sink = new RecordingSink();
+
+    QuoteHub.Subscription subscription = quoteHub.subscribe(List.of("AAPL", "XXX", "MSFT"), sink);
+    runTasks();
+
+    assertThat(subscription.getSymbols()).containsExactlyInAnyOrder("AAPL", "MSFT");
+    assertThat(sink.events).containsExactly("quote AAPL");
+    assertThat(sink.json.get(0)).contains("\"symbol\":\"AAPL\"").contains("2020-05-01 15:55:00");
+    assertThat(meterRegistry.get("stock.subscriptions").gauge().value()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldFanOutNewBarsOncePerBar() {
+    subscribe("AAPL", barsUntil("2020-05-01 15:55:00"));
+    RecordingSink first = new RecordingSink();
+    RecordingSink second = new RecordingSink();
+    quoteHub.subscribe(List.of("AAPL"), first);
+    quoteHub.subscribe(List.of("AAPL"), second);
+    when(stockFetcher.fetchAll(List.of("AAPL")))
+        .thenReturn(Map.of("AAPL", barsUntil("2020-05-01 16:00:00")));
+
+    quoteHub.publish();
+    quoteHub.publish();
+    runTasks();
+
+    assertThat(first.events).containsExactly("quote AAPL", "delta AAPL");
+    assertThat(first.json.get(1)).contains("2020-05-01 16:00:00").doesNotContain("15:55:00");
+    assertThat(second.json.get(1)).isSameAs(first.json.get(1));
+  }
+
+  @Test
+  public void shouldShareFetchesAcrossSymbolCasing() {
+    subscribe("AAPL", barsUntil("2020-05-01 15:55:00"));
+    RecordingSink lower = new RecordingSink();
+    RecordingSink upper = new RecordingSink();
+    quoteHub.subscribe(List.of(" aapl"), lower);
+    quoteHub.subscribe(List.of("AAPL"), upper);
+    when(stockFetcher.fetchAll(List.of("AAPL")))
+        .thenReturn(Map.of("AAPL", barsUntil("2020-05-01 16:00:00")));
+
+    quoteHub.publish();
+    runTasks();
+
+    assertThat(lower.events).containsExactly("quote AAPL", "delta AAPL");
+    assertThat(upper.json.get(1)).isSameAs(lower.json.get(1));
+  }
+
+  @Test
+  public void shouldNotTrackSymbolsWithoutSubscribers() {
+    subscribe("AAPL", barsUntil("2020-05-01 15:55:00"));
+    QuoteHub.Subscription subscription = quoteHub.subscribe(List.of("AAPL"), new RecordingSink());
+    quoteHub.unsubscribe(subscription);
+    RecordingSink sink = new RecordingSink();
+
+    quoteHub.publish("AAPL", barsUntil("2020-05-01 16:00:00"));
+    quoteHub.subscribe(List.of("AAPL"), sink);
+    quoteHub.publish("AAPL", barsUntil("2020-05-01 16:00:00"));
+    runTasks();
+
+    assertThat(sink.events).containsExactly("quote AAPL", "delta AAPL");
+    assertThat(sink.json.get(1)).contains("16:00:00");
+  }
+
+  @Test
+  public void shouldEvictSlowSubscriber() {
+    subscribe("AAPL", barsUntil("2020-05-01 15:50:00"));
+    RecordingSink sink = new RecordingSink();
+    quoteHub.subscribe(List.of("AAPL"), sink);
+
+    quoteHub.publish("AAPL", barsUntil("2020-05-01 15:55:00"));
+    quoteHub.publish("AAPL", barsUntil("2020-05-01 16:00:00"));
+    quoteHub.publish("AAPL", barsUntil("2020-05-01 16:05:00"));
+    runTasks();
+
+    assertThat(sink.closed).isTrue();
+    assertThat(sink.events).isEmpty();
+    assertThat(meterRegistry.counter("stock.subscriptions.evicted").count()).isEqualTo(1);
+    assertThat(meterRegistry.get("stock.subscriptions").gauge().value()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldUnsubscribeIfSendingFails() {
+    subscribe("AAPL", barsUntil("2020-05-01 15:55:00"));
+    RecordingSink sink = new RecordingSink();
+    sink.failing = true;
+    QuoteHub.Subscription subscription = quoteHub.subscribe(List.of("AAPL"), sink);
+
+    runTasks();
+    quoteHub.publish("AAPL", barsUntil("2020-05-01 16:00:00"));
+
+    assertThat(sink.closed).isTrue();
+    assertThat(tasks).isEmpty();
+    quoteHub.unsubscribe(subscription);
+  }
+
+  @Test
+  public void shouldRejectSubscriptionWithoutValidSymbols() {
+    when(stockFetcher.fetchResults(List.of("XXX")))
+        .thenReturn(
+            new LinkedHashMap<>(
+                Map.of(
+                    "XXX", StockResult.failure(HttpStatus.BAD_REQUEST, "Invalid stock symbol"))));
+
+    assertThatThrownBy(() -> quoteHub.subscribe(List.of("XXX"), new RecordingSink()))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    assertThat(meterRegistry.get("stock.subscriptions").gauge().value()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldReserveSlotBeforeFetchingSnapshots() throws Exception {
+    QuoteHub quoteHub = new QuoteHub(stockFetcher, objectMapper, meterRegistry, tasks::add, 1, 1);
+    CountDownLatch fetching = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(stockFetcher.fetchResults(List.of("AAPL")))
+        .thenAnswer(
+            invocation -> {
+              fetching.countDown();
+              release.await();
+              return Map.of("AAPL", StockResult.success(barsUntil("2020-05-01 15:55:00")));
+            });
+    CompletableFuture<QuoteHub.Subscription> first =
+        CompletableFuture.supplyAsync(
+            () -> quoteHub.subscribe(List.of("AAPL"), new RecordingSink()));
+    fetching.await();
+
+    assertThatThrownBy(() -> quoteHub.subscribe(List.of("AAPL"), new RecordingSink()))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.SERVICE_UNAVAILABLE);
+    release.countDown();
+    quoteHub.unsubscribe(first.get());
+    assertThat(quoteHub.subscribe(List.of("AAPL"), new RecordingSink()).getSymbols())
+        .containsExactly("AAPL");
+  }
+
+  @Test
+  public void shouldReleaseSlotIfSubscribingFails() {
+    QuoteHub quoteHub = new QuoteHub(stockFetcher, objectMapper, meterRegistry, tasks::add, 1, 1);
+    when(stockFetcher.fetchResults(List.of("XXX")))
+        .thenReturn(
+            new LinkedHashMap<>(
+                Map.of(
+                    "XXX", StockResult.failure(HttpStatus.BAD_REQUEST, "Invalid stock symbol"))));
+    subscribe("AAPL", barsUntil("2020-05-01 15:55:00"));
+
+    assertThatThrownBy(() -> quoteHub.subscribe(List.of("XXX"), new RecordingSink()))
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    assertThat(quoteHub.subscribe(List.of("AAPL"), new RecordingSink()).getSymbols())
+        .containsExactly("AAPL");
+  }
+
+  private void subscribe(String symbol, Stock stock) {
+    when(stockFetcher.fetchResults(List.of(symbol)))
+        .thenReturn(Map.of(symbol, StockResult.success(stock)));
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private static Stock barsUntil(String timestamp) {
+    long last = StockSeries.parseTimestamp(timestamp);
+    return new Stock(
+        StockSeries.builder().add(last - 300, 1, 2, 1, 2, 10).add(last, 2, 3, 2, 3, 20).build());
+  }
+
+  private static class RecordingSink implements QuoteHub.Sink {
+    private final List<String> events = new ArrayList<>();
+    private final List<String> json = new ArrayList<>();
+    private boolean failing;
+    private boolean closed;
+
+    @Override
+    public void send(String event, String symbol, String json) throws IOException {
+      if (failing) {
+        throw new IOException("Broken pipe");
+      }
+      events.add(event + " " + symbol);
+      this.json.add(json);
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
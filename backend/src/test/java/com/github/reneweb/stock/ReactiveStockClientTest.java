@@ -0,0 +1,86 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+class ReactiveStockClientTest {
+  private final AlphaVantageParser parser = new AlphaVantageParser(new ObjectMapper());
+
+  private final String stockJson =
+      "{"
+          + "   \"Time Series (5min)\":{"
+          + "      \"2020-05-01 16:00:00\":{"
+          + "         \"1. open\":\"1\","
+          + "         \"2. high\":\"2\","
+          + "         \"3. low\":\"3\","
+          + "         \"4. close\":\"4\","
+          + "         \"5. volume\":\"5\""
+          + "      }"
+          + "   }"
+          + "}";
+
+  @Test
+  public void shouldReturnStockDataIfCallSuccessful() {
+    AtomicReference<URI> requestedUri = new AtomicReference<>();
+    ReactiveStockClient reactiveStockClient =
+        new ReactiveStockClient(
+            "myApiKey",
+            1000,
+            WebClient.builder()
+                .exchangeFunction(
+                    request -> {
+                      requestedUri.set(request.url());
+                      return Mono.just(
+                          ClientResponse.create(HttpStatus.OK)
+                              .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                              .body(stockJson)
+                              .build());
+                    }),
+            parser);
+
+    Stock stock = reactiveStockClient.fetchStockBySymbol("myStock").block();
+    assertThat(stock.getStockHistory().get("2020-05-01 16:00:00").getClose()).isEqualTo("4");
+    assertThat(requestedUri.get().toString())
+        .isEqualTo(
+            "https://www.alphavantage.co/query?function=TIME_SERIES_INTRADAY&symbol=myStock&interval=5min&apikey=myApiKey");
+  }
+
+  @Test
+  public void shouldThrow400ResponseExceptionIfSymbolInvalid() {
+    ReactiveStockClient reactiveStockClient = clientRespondingWith(HttpStatus.BAD_REQUEST);
+
+    assertThatThrownBy(() -> reactiveStockClient.fetchStockBySymbol("myStock").block())
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+  }
+
+  @Test
+  public void shouldThrowResponseExceptionIfCallUnsuccessful() {
+    ReactiveStockClient reactiveStockClient = clientRespondingWith(HttpStatus.FORBIDDEN);
+
+    assertThatThrownBy(() -> reactiveStockClient.fetchStockBySymbol("myStock").block())
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.INTERNAL_SERVER_ERROR);
+  }
+
+  private ReactiveStockClient clientRespondingWith(HttpStatus status) {
+    return new ReactiveStockClient(
+        "myApiKey",
+        1000,
+        WebClient.builder()
+            .exchangeFunction(request -> Mono.just(ClientResponse.create(status).build())),
+        parser);
+  }
+}
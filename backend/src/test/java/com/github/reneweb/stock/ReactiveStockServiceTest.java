@@ -0,0 +1,131 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.reneweb.facebook.FBAccessTokenValidator;
+import com.github.reneweb.facebook.FBTokenData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveStockServiceTest {
+  @Mock private FBAccessTokenValidator fbAccessTokenValidator;
+  @Mock private StockCache stockCache;
+  @Mock private AmazonDynamoDBAsync amazonDynamoDBAsync;
+  @Mock private StockRepository stockRepository;
+
+  @Mock private WatchlistWriter watchlistWriter;
+
+  private ReactiveStockService reactiveStockService;
+
+  private final String userAccessToken = "myUserAccessToken";
+  private final String userId = "myUserId";
+
+  @BeforeEach
+  public void setup() {
+    lenient()
+        .when(watchlistWriter.withPendingChanges(any(), any()))
+        .thenAnswer(invocation -> invocation.getArgument(1));
+    reactiveStockService =
+        new ReactiveStockService(
+            fbAccessTokenValidator,
+            stockCache,
+            amazonDynamoDBAsync,
+            watchlistWriter,
+            new WatchlistCache(
+                stockRepository,
+                new SimpleMeterRegistry(),
+                100,
+                Duration.ofMinutes(1),
+                Ticker.systemTicker()),
+            new SimpleMeterRegistry(),
+            500);
+  }
+
+  @Test
+  public void shouldGetStock() {
+    Stock stock = new Stock();
+    when(stockCache.getAsync("myStock")).thenReturn(CompletableFuture.completedFuture(stock));
+
+    assertThat(reactiveStockService.getStock("myStock").block()).isEqualTo(stock);
+  }
+
+  @Test
+  public void shouldGetWatchlistWithoutFailedSymbols() {
+    Stock stock = new Stock();
+    when(fbAccessTokenValidator.validateAsync(userAccessToken))
+        .thenReturn(Mono.just(new FBTokenData("myAppId", userId, false)));
+    mockWatchlistItem(
+        new GetItemResult()
+            .withItem(
+                Map.of("symbols", new AttributeValue().withSS("validStock", "invalidStock"))));
+    when(stockCache.getAsync("validStock")).thenReturn(CompletableFuture.completedFuture(stock));
+    when(stockCache.getAsync("invalidStock"))
+        .thenReturn(
+            CompletableFuture.failedFuture(new ResponseStatusException(HttpStatus.BAD_REQUEST)));
+
+    Set<Stock> stocks = reactiveStockService.getWatchlist(userAccessToken).block();
+    assertThat(stocks).isEqualTo(Set.of(stock));
+  }
+
+  @Test
+  public void shouldReturnEmptySetIfWatchlistNotFound() {
+    when(fbAccessTokenValidator.validateAsync(userAccessToken))
+        .thenReturn(Mono.just(new FBTokenData("myAppId", userId, false)));
+    mockWatchlistItem(new GetItemResult());
+
+    Set<Stock> stocks = reactiveStockService.getWatchlist(userAccessToken).block();
+    assertThat(stocks).isEmpty();
+  }
+
+  @Test
+  public void shouldReadWatchlistFromTableOnlyOnce() {
+    Stock stock = new Stock();
+    when(fbAccessTokenValidator.validateAsync(userAccessToken))
+        .thenReturn(Mono.just(new FBTokenData("myAppId", userId, false)));
+    mockWatchlistItem(
+        new GetItemResult().withItem(Map.of("symbols", new AttributeValue().withSS("myStock"))));
+    when(stockCache.getAsync("myStock")).thenReturn(CompletableFuture.completedFuture(stock));
+
+    assertThat(reactiveStockService.getWatchlist(userAccessToken).block()).isEqualTo(Set.of(stock));
+    assertThat(reactiveStockService.getWatchlist(userAccessToken).block()).isEqualTo(Set.of(stock));
+
+    verify(amazonDynamoDBAsync, times(1))
+        .getItemAsync(any(GetItemRequest.class), any(AsyncHandler.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void mockWatchlistItem(GetItemResult result) {
+    when(amazonDynamoDBAsync.getItemAsync(any(GetItemRequest.class), any(AsyncHandler.class)))
+        .thenAnswer(
+            invocation -> {
+              GetItemRequest request = invocation.getArgument(0);
+              assertThat(request.getKey()).isEqualTo(Map.of("userId", new AttributeValue(userId)));
+              AsyncHandler<GetItemRequest, GetItemResult> handler = invocation.getArgument(1);
+              handler.onSuccess(request, result);
+              return CompletableFuture.completedFuture(result);
+            });
+  }
+}
@@ -0,0 +1,267 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+class StockCacheTest {
+  @Mock private StockClient stockClient;
+  @Mock private ReactiveStockClient reactiveStockClient;
+  @Mock private SymbolPopularity symbolPopularity;
+  @Mock private AlphaVantageRateLimiter rateLimiter;
+  @Mock private SymbolIndex symbolIndex;
+  @Mock private PeerStockClient peerStockClient;
+
+  private final AtomicLong ticker = new AtomicLong();
+  private final String symbol = "myStock";
+  // Two minutes before the next bar boundary
+  private final Clock clock = Clock.fixed(Instant.parse("2020-05-01T14:33:00Z"), ZoneOffset.UTC);
+  private MeterRegistry meterRegistry;
+  private StockCache stockCache;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    stockCache = stockCache(null, null);
+  }
+
+  private StockCache stockCache(SharedStockCache sharedStockCache) {
+    return stockCache(sharedStockCache, null);
+  }
+
+  private StockCache stockCache(
+      SharedStockCache sharedStockCache, PeerStockClient peerStockClient) {
+    return new StockCache(
+        stockClient,
+        reactiveStockClient,
+        new StockFetchCoalescer(meterRegistry),
+        symbolPopularity,
+        rateLimiter,
+        symbolIndex,
+        sharedStockCache,
+        peerStockClient,
+        meterRegistry,
+        10,
+        clock,
+        ticker::get);
+  }
+
+  @Test
+  public void shouldFetchStockOnlyOnceWithinABar() {
+    Stock stock = stock();
+    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(stock);
+
+    assertThat(stockCache.get(symbol)).isEqualTo(stock);
+    assertThat(stockCache.get(symbol)).isEqualTo(stock);
+
+    verify(stockClient, times(1)).fetchStockBySymbol(symbol);
+    verify(symbolIndex).add(symbol);
+    assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void shouldFetchStockAgainAfterTheBarBoundary() {
+    Stock stock = stock();
+    Stock nextStock = stock();
+    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(stock, nextStock);
+
+    assertThat(stockCache.get(symbol)).isEqualTo(stock);
+    ticker.addAndGet(Duration.ofMinutes(1).toNanos());
+    assertThat(stockCache.get(symbol)).isEqualTo(stock);
+    ticker.addAndGet(Duration.ofMinutes(1).toNanos());
+    assertThat(stockCache.get(symbol)).isEqualTo(nextStock);
+  }
+
+  @Test
+  public void shouldNotCacheFailedFetches() {
+    Stock stock = stock();
+    when(stockClient.fetchStockBySymbol(symbol))
+        .thenThrow(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR))
+        .thenReturn(stock);
+
+    assertThatThrownBy(() -> stockCache.get(symbol)).isInstanceOf(ResponseStatusException.class);
+    assertThat(stockCache.get(symbol)).isEqualTo(stock);
+  }
+
+  @Test
+  public void shouldNotCacheStocksWithoutBars() {
+    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(new Stock());
+
+    stockCache.get(symbol);
+    stockCache.get(symbol);
+
+    verify(stockClient, times(2)).fetchStockBySymbol(symbol);
+    verifyNoInteractions(symbolIndex);
+  }
+
+  @Test
+  public void shouldNotFetchIfRateLimitIsExceeded() {
+    doThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE))
+        .when(rateLimiter)
+        .acquire(FetchPriority.VALIDATION);
+
+    assertThatThrownBy(() -> stockCache.get(symbol, FetchPriority.VALIDATION))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.SERVICE_UNAVAILABLE);
+    verifyNoInteractions(stockClient);
+  }
+
+  @Test
+  public void shouldShareCacheBetweenBlockingAndAsynchronousAccess() {
+    Stock stock = stock();
+    when(reactiveStockClient.fetchStockBySymbol(symbol)).thenReturn(Mono.just(stock));
+    when(rateLimiter.acquireAsync(FetchPriority.INTERACTIVE))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    assertThat(stockCache.getAsync(symbol).join()).isEqualTo(stock);
+    assertThat(stockCache.get(symbol)).isEqualTo(stock);
+    verifyNoInteractions(stockClient);
+  }
+
+  @Test
+  public void shouldFetchStockOnceAcrossInstancesSharingACache() throws Exception {
+    SharedStockCache sharedStockCache = new InMemorySharedStockCache(clock);
+    StockCache first = stockCache(sharedStockCache);
+    StockCache second = stockCache(sharedStockCache);
+    Stock stock = stock();
+    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(stock);
+
+    first.get(symbol);
+    Stock shared = second.get(symbol);
+    Stock sharedAsync = stockCache(sharedStockCache).getAsync(symbol).join();
+
+    verify(stockClient, times(1)).fetchStockBySymbol(symbol);
+    verifyNoInteractions(reactiveStockClient);
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    String json = objectMapper.writeValueAsString(stock);
+    assertThat(objectMapper.writeValueAsString(shared)).isEqualTo(json);
+    assertThat(objectMapper.writeValueAsString(sharedAsync)).isEqualTo(json);
+    assertThat(meterRegistry.counter("stock.sharedcache", "outcome", "hit").count()).isEqualTo(2);
+    assertThat(meterRegistry.counter("stock.sharedcache", "outcome", "miss").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldReadStockFromOwningNode() {
+    Stock stock = stock();
+    Stock owned = stock();
+    StockCache stockCache = stockCache(null, peerStockClient);
+    when(peerStockClient.fetchFromOwner("MYSTOCK", FetchPriority.INTERACTIVE))
+        .thenReturn(Mono.just(stock));
+    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(owned);
+
+    assertThat(stockCache.get(symbol)).isEqualTo(stock);
+    assertThat(stockCache.getAsync(symbol).join()).isEqualTo(stock);
+    verifyNoInteractions(stockClient, rateLimiter);
+
+    ticker.addAndGet(Duration.ofMinutes(2).toNanos());
+    assertThat(stockCache.getOwned(symbol, FetchPriority.INTERACTIVE)).isEqualTo(owned);
+    verify(peerStockClient, times(1)).fetchFromOwner("MYSTOCK", FetchPriority.INTERACTIVE);
+  }
+
+  @Test
+  public void shouldFetchStockItselfIfOwnerIsUnavailable() {
+    Stock stock = stock();
+    StockCache stockCache = stockCache(null, peerStockClient);
+    when(peerStockClient.fetchFromOwner("MYSTOCK", FetchPriority.INTERACTIVE))
+        .thenReturn(Mono.empty());
+    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(stock);
+
+    assertThat(stockCache.get(symbol)).isEqualTo(stock);
+  }
+
+  @Test
+  public void shouldRecordRequestsForPopularity() {
+    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(stock());
+
+    stockCache.get(symbol);
+
+    verify(symbolPopularity).recordRequest(symbol);
+  }
+
+  @Test
+  public void shouldPrefetchOnlyIfNotCached() {
+    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(stock());
+
+    assertThat(stockCache.prefetch(symbol)).isTrue();
+    assertThat(stockCache.prefetch(symbol)).isFalse();
+    verify(stockClient, times(1)).fetchStockBySymbol(symbol);
+    verify(rateLimiter).acquire(FetchPriority.BACKGROUND);
+    verifyNoInteractions(symbolPopularity);
+  }
+
+  @Test
+  public void shouldNotReportPrefetchServedWithoutUpstreamCall() {
+    SharedStockCache sharedStockCache = new InMemorySharedStockCache(clock);
+    sharedStockCache.put("MYSTOCK", stock(), BarSchedule.nextBoundary(clock.instant()));
+    when(peerStockClient.fetchFromOwner("OTHER", FetchPriority.BACKGROUND))
+        .thenReturn(Mono.just(stock()));
+    when(peerStockClient.fetchFromOwner("MYSTOCK", FetchPriority.BACKGROUND))
+        .thenReturn(Mono.empty());
+    StockCache stockCache = stockCache(sharedStockCache, peerStockClient);
+
+    assertThat(stockCache.prefetch("other")).isFalse();
+    assertThat(stockCache.prefetch(symbol)).isFalse();
+    verifyNoInteractions(stockClient, rateLimiter);
+  }
+
+  @Test
+  public void shouldNotLetInteractiveRequestsWaitBehindAPrefetch() throws Exception {
+    Stock stock = stock();
+    CountDownLatch prefetchWaiting = new CountDownLatch(1);
+    CountDownLatch releasePrefetch = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              prefetchWaiting.countDown();
+              releasePrefetch.await();
+              return null;
+            })
+        .when(rateLimiter)
+        .acquire(FetchPriority.BACKGROUND);
+    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(stock);
+
+    CompletableFuture<Boolean> prefetch =
+        CompletableFuture.supplyAsync(() -> stockCache.prefetch(symbol));
+    prefetchWaiting.await();
+
+    assertThat(stockCache.get(symbol)).isEqualTo(stock);
+    verify(rateLimiter).acquire(FetchPriority.INTERACTIVE);
+    releasePrefetch.countDown();
+    prefetch.join();
+    verify(stockClient, times(1)).fetchStockBySymbol(symbol);
+  }
+
+  private static Stock stock() {
+    return new Stock(
+        StockSeries.builder()
+            .add(StockSeries.parseTimestamp("2020-05-01 10:25:00"), 1.5, 2, 1, 1.75, 100)
+            .priceScale(2)
+            .build());
+  }
+}
@@ -6,16 +6,19 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -24,54 +27,43 @@ class StockClientTest {
   @Mock private RestTemplate restTemplate;
 
   private String apikey = "myApiKey";
+  private String symbol = "myStock";
+  private String url =
+      "https://www.alphavantage.co/query?function=TIME_SERIES_INTRADAY&symbol={symbol}&interval=5min&apikey={apikey}";
 
   private StockClient stockClient;
 
   @BeforeEach
   public void setup() {
-    stockClient = new StockClient(apikey, restTemplate);
+    stockClient = new StockClient(apikey, restTemplate, new AlphaVantageParser(new ObjectMapper()));
   }
 
   @Test
   public void shouldReturnStockDataIfCallSuccessful() {
-    String symbol = "myStock";
-    String url =
-        "https://www.alphavantage.co/query?function=TIME_SERIES_INTRADAY&symbol={symbol}&interval=5min&apikey={apikey}";
-
-    Stock stock = new Stock();
-    when(restTemplate.exchange(
-            eq(url),
-            eq(HttpMethod.GET),
-            any(HttpEntity.class),
-            eq(Stock.class),
-            eq(
-                Map.of(
-                    "symbol", symbol,
-                    "apikey", apikey))))
-        .thenReturn(new ResponseEntity<>(stock, HttpStatus.OK));
+    mockResponse(
+        "{\"Meta Data\":{\"1. Information\":\"Intraday (5min) open, high, low, close prices\"},"
+            + "\"Time Series (5min)\":{\"2020-05-01 16:00:00\":{\"1. open\":\"1\","
+            + "\"2. high\":\"2\",\"3. low\":\"3\",\"4. close\":\"4\",\"5. volume\":\"5\"}}}",
+        HttpStatus.OK);
 
     Stock stockResult = stockClient.fetchStockBySymbol(symbol);
-    assertThat(stockResult).isEqualTo(stock);
+    assertThat(stockResult.getStockHistory().get("2020-05-01 16:00:00").getClose()).isEqualTo("4");
   }
 
   @Test
   public void shouldThrow400ResponseExceptionIfSymbolInvalid() {
-    String symbol = "myStock";
-    String apikey = "myApiKey";
-    String url =
-        "https://www.alphavantage.co/query?function=TIME_SERIES_INTRADAY&symbol={symbol}&interval=5min&apikey={apikey}";
+    mockResponse("{}", HttpStatus.BAD_REQUEST);
 
-    Stock stock = new Stock();
-    when(restTemplate.exchange(
-            eq(url),
-            eq(HttpMethod.GET),
-            any(),
-            eq(Stock.class),
-            eq(
-                Map.of(
-                    "symbol", symbol,
-                    "apikey", apikey))))
-        .thenReturn(new ResponseEntity<>(stock, HttpStatus.BAD_REQUEST));
+    assertThatThrownBy(() -> stockClient.fetchStockBySymbol(symbol))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+  }
+
+  @Test
+  public void shouldThrow400ResponseExceptionIfAlphaVantageReportsError() {
+    mockResponse(
+        "{\"Error Message\":\"Invalid API call. Please retry or visit the documentation.\"}",
+        HttpStatus.OK);
 
     assertThatThrownBy(() -> stockClient.fetchStockBySymbol(symbol))
         .isInstanceOf(ResponseStatusException.class)
@@ -80,25 +72,38 @@ class StockClientTest {
 
   @Test
   public void shouldThrowResponseExceptionIfCallUnsuccessful() {
-    String symbol = "myStock";
-    String apikey = "myApiKey";
-    String url =
-        "https://www.alphavantage.co/query?function=TIME_SERIES_INTRADAY&symbol={symbol}&interval=5min&apikey={apikey}";
+    mockResponse("{}", HttpStatus.FORBIDDEN);
 
-    Stock stock = new Stock();
-    when(restTemplate.exchange(
+    assertThatThrownBy(() -> stockClient.fetchStockBySymbol(symbol))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.INTERNAL_SERVER_ERROR);
+  }
+
+  @Test
+  public void shouldThrowResponseExceptionIfBodyIsMalformed() {
+    mockResponse("{\"Time Series (5min)\":", HttpStatus.OK);
+
+    assertThatThrownBy(() -> stockClient.fetchStockBySymbol(symbol))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.INTERNAL_SERVER_ERROR);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void mockResponse(String body, HttpStatus status) {
+    when(restTemplate.execute(
             eq(url),
             eq(HttpMethod.GET),
-            any(),
-            eq(Stock.class),
+            any(RequestCallback.class),
+            any(ResponseExtractor.class),
             eq(
                 Map.of(
                     "symbol", symbol,
                     "apikey", apikey))))
-        .thenReturn(new ResponseEntity<>(stock, HttpStatus.FORBIDDEN));
-
-    assertThatThrownBy(() -> stockClient.fetchStockBySymbol(symbol))
-        .isInstanceOf(ResponseStatusException.class)
-        .hasFieldOrPropertyWithValue("status", HttpStatus.INTERNAL_SERVER_ERROR);
+        .thenAnswer(
+            invocation ->
+                invocation
+                    .<ResponseExtractor<Stock>>getArgument(3)
+                    .extractData(
+                        new MockClientHttpResponse(body.getBytes(StandardCharsets.UTF_8), status)));
   }
 }
@@ -1,28 +1,330 @@
 package com.github.reneweb.stock;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 @ExtendWith(MockitoExtension.class)
 class StockControllerTest {
   @Mock private StockService stockService;
+  @Mock private QuoteHub quoteHub;
 
-  @InjectMocks private StockController stockController;
+  private final Clock clock =
+      Clock.fixed(Instant.parse("2020-05-01T19:58:30.500Z"), ZoneOffset.UTC);
+
+  private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+  private StockController stockController;
+
+  @BeforeEach
+  public void setup() {
+    StockPayloadCache stockPayloadCache =
+        new StockPayloadCache(objectMapper, new SimpleMeterRegistry(), 10);
+    stockController =
+        new StockController(stockService, stockPayloadCache, quoteHub, 1000, 1000, clock);
+  }
+
+  @Test
+  public void getStockShouldDelegateToService() throws Exception {
+    String symbol = "myStock";
+    Stock stock = barAt("2020-05-01 15:55:00");
+    when(stockService.getStock(symbol)).thenReturn(stock);
+
+    ResponseEntity<?> response = stockController.getStock(symbol, null, null, null, null, null);
+
+    assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+    assertThat(response.getBody()).isEqualTo(objectMapper.writeValueAsBytes(stock));
+  }
 
   @Test
-  public void getStockShouldDelegateToService() {
+  public void getStockShouldReusePayloadUntilStockChanges() {
     String symbol = "myStock";
-    Stock stock = new Stock();
+    when(stockService.getStock(symbol)).thenReturn(barAt("2020-05-01 15:55:00"));
+
+    Object first = stockController.getStock(symbol, null, null, null, null, null).getBody();
+    Object second = stockController.getStock(symbol, null, null, null, null, null).getBody();
+    when(stockService.getStock(symbol)).thenReturn(barAt("2020-05-01 16:00:00"));
+    Object third = stockController.getStock(symbol, null, null, null, null, null).getBody();
+
+    assertThat(second).isSameAs(first);
+    assertThat(third).isNotSameAs(first);
+  }
+
+  @Test
+  public void getStockShouldSendGzippedPayloadIfAccepted() throws Exception {
+    String symbol = "myStock";
+    Stock stock = barAt("2020-05-01 15:55:00");
     when(stockService.getStock(symbol)).thenReturn(stock);
-    Stock stockResult = stockController.getStock(symbol);
-    assertThat(stockResult).isEqualTo(stock);
+
+    ResponseEntity<?> plain = stockController.getStock(symbol, null, null, null, null, "br");
+    ResponseEntity<?> gzipped =
+        stockController.getStock(symbol, null, null, null, null, "br, gzip;q=0.8");
+
+    assertThat(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+    assertThat(gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+    assertThat(gzipped.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+    assertThat(gzipped.getHeaders().getETag()).isNotEqualTo(plain.getHeaders().getETag());
+    try (GZIPInputStream in =
+        new GZIPInputStream(new ByteArrayInputStream((byte[]) gzipped.getBody()))) {
+      assertThat(in.readAllBytes()).isEqualTo(plain.getBody());
+    }
+  }
+
+  @Test
+  public void getStockShouldApplyProjection() {
+    String symbol = "myStock";
+    StockSeries series =
+        StockSeries.builder()
+            .add(StockSeries.parseTimestamp("2020-05-01 15:50:00"), 1, 2, 0.5, 1.5, 100)
+            .add(StockSeries.parseTimestamp("2020-05-01 15:55:00"), 1.5, 2, 1, 1.75, 200)
+            .add(StockSeries.parseTimestamp("2020-05-01 16:00:00"), 1.75, 3, 1.5, 2, 300)
+            .priceScale(2)
+            .build();
+    when(stockService.getStock(symbol)).thenReturn(new Stock(series));
+
+    Stock stockResult =
+        (Stock)
+            stockController
+                .getStock(symbol, "2020-05-01 15:50:00", null, 2, List.of("close"), null)
+                .getBody();
+
+    assertThat(stockResult.getStockHistory().keySet())
+        .containsExactly("2020-05-01 16:00:00", "2020-05-01 15:55:00");
+    assertThat(stockResult.getStockHistory().get("2020-05-01 15:55:00").getClose())
+        .isEqualTo("1.75");
+    assertThat(stockResult.getStockHistory().get("2020-05-01 15:55:00").getOpen()).isNull();
+  }
+
+  @Test
+  public void getStockShouldBeCacheableUntilNextBar() {
+    String symbol = "myStock";
+    Stock stock = barAt("2020-05-01 15:55:00");
+    when(stockService.getStock(symbol)).thenReturn(stock);
+
+    ResponseEntity<?> response = stockController.getStock(symbol, null, null, null, null, null);
+    ResponseEntity<?> projected = stockController.getStock(symbol, null, null, 1, null, null);
+
+    assertThat(response.getHeaders().getCacheControl()).isEqualTo("max-age=90, public");
+    assertThat(response.getHeaders().getETag()).isNotEqualTo(projected.getHeaders().getETag());
+    when(stockService.getStock(symbol)).thenReturn(barAt("2020-05-01 16:00:00"));
+    assertThat(
+            stockController.getStock(symbol, null, null, null, null, null).getHeaders().getETag())
+        .isNotEqualTo(response.getHeaders().getETag());
+  }
+
+  @Test
+  public void getStocksShouldReturnResultsBySymbol() throws Exception {
+    when(stockService.getStocks(List.of("AAPL", "XXX")))
+        .thenReturn(
+            Map.of(
+                "AAPL",
+                StockResult.success(barAt("2020-05-01 15:55:00")),
+                "XXX",
+                StockResult.failure(HttpStatus.BAD_REQUEST, "Invalid stock symbol")));
+    MockMvc mockMvc = MockMvcBuilders.standaloneSetup(stockController).build();
+
+    mockMvc
+        .perform(get("/stocks").param("symbols", "AAPL,XXX"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.AAPL.stock['Time Series (5min)']").exists())
+        .andExpect(jsonPath("$.AAPL.error").doesNotExist())
+        .andExpect(jsonPath("$.XXX.status").value(400))
+        .andExpect(jsonPath("$.XXX.error").value("Invalid stock symbol"));
+  }
+
+  @Test
+  public void getWatchlistShouldAnswerNotModifiedForMatchingETag() throws Exception {
+    Map<String, Stock> stocks = new HashMap<>();
+    stocks.put("myStock", barAt("2020-05-01 15:55:00"));
+    stocks.put("otherStock", barAt("2020-05-01 15:50:00"));
+    when(stockService.getWatchlistStocks("123")).thenReturn(stocks);
+    MockMvc mockMvc = MockMvcBuilders.standaloneSetup(stockController).build();
+
+    String eTag =
+        mockMvc
+            .perform(get("/watchlist").header("Authorization", "Bearer 123"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Cache-Control", "max-age=90, private"))
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+
+    mockMvc
+        .perform(
+            get("/watchlist").header("Authorization", "Bearer 123").header("If-None-Match", eTag))
+        .andExpect(status().isNotModified())
+        .andExpect(content().string(""));
+
+    stocks.put("thirdStock", barAt("2020-05-01 15:55:00"));
+    mockMvc
+        .perform(
+            get("/watchlist").header("Authorization", "Bearer 123").header("If-None-Match", eTag))
+        .andExpect(status().isOk());
+  }
+
+  @Test
+  public void getWatchlistShouldAnswerJsonByDefault() throws Exception {
+    when(stockService.getWatchlistStocks("123"))
+        .thenReturn(Map.of("AAPL", barAt("2020-05-01 15:55:00")));
+    MockMvc mockMvc = MockMvcBuilders.standaloneSetup(stockController).build();
+
+    mockMvc
+        .perform(get("/watchlist").header("Authorization", "Bearer 123"))
+        .andExpect(request().asyncNotStarted())
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+        .andExpect(jsonPath("$[0]['Time Series (5min)']").exists());
+    mockMvc
+        .perform(
+            get("/watchlist")
+                .header("Authorization", "Bearer 123")
+                .accept(MediaType.APPLICATION_JSON))
+        .andExpect(request().asyncNotStarted())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    verify(stockService, never()).streamWatchlist(any(), any());
+  }
+
+  @Test
+  public void streamWatchlistShouldWriteOneLinePerSymbol() throws Exception {
+    AtomicReference<Consumer<SymbolQuote>> consumer = new AtomicReference<>();
+    CompletableFuture<Void> done = streamWatchlist(consumer);
+    MockMvc mockMvc = MockMvcBuilders.standaloneSetup(stockController).build();
+
+    MvcResult result =
+        mockMvc
+            .perform(
+                get("/watchlist")
+                    .header("Authorization", "Bearer 123")
+                    .accept(MediaType.parseMediaType("application/x-ndjson")))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    consumer.get().accept(new SymbolQuote("AAPL", barAt("2020-05-01 15:55:00")));
+    consumer.get().accept(new SymbolQuote("MSFT", barAt("2020-05-01 15:50:00")));
+    done.complete(null);
+
+    String body =
+        mockMvc
+            .perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    String[] lines = body.split("\n");
+    assertThat(lines).hasSize(2);
+    assertThat(objectMapper.readTree(lines[0]).get("symbol").asText()).isEqualTo("AAPL");
+    assertThat(objectMapper.readTree(lines[0]).get("stock").has("Time Series (5min)")).isTrue();
+    assertThat(objectMapper.readTree(lines[1]).get("symbol").asText()).isEqualTo("MSFT");
+  }
+
+  @Test
+  public void streamWatchlistEventsShouldSendOneEventPerSymbol() throws Exception {
+    AtomicReference<Consumer<SymbolQuote>> consumer = new AtomicReference<>();
+    CompletableFuture<Void> done = streamWatchlist(consumer);
+    MockMvc mockMvc = MockMvcBuilders.standaloneSetup(stockController).build();
+
+    MvcResult result =
+        mockMvc
+            .perform(
+                get("/watchlist")
+                    .header("Authorization", "Bearer 123")
+                    .accept(MediaType.TEXT_EVENT_STREAM))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    consumer.get().accept(new SymbolQuote("AAPL", barAt("2020-05-01 15:55:00")));
+    consumer.get().accept(new SymbolQuote("MSFT", barAt("2020-05-01 15:50:00")));
+    done.complete(null);
+
+    String body =
+        mockMvc
+            .perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    String[] events = body.split("\n\n");
+    assertThat(events).hasSize(2);
+    assertThat(events[0]).startsWith("event:quote\nid:AAPL\ndata:{\"symbol\":\"AAPL\"");
+    assertThat(events[1]).startsWith("event:quote\nid:MSFT\ndata:{\"symbol\":\"MSFT\"");
+  }
+
+  @Test
+  public void streamWatchlistShouldEndAtDeadline() throws Exception {
+    AtomicReference<Consumer<SymbolQuote>> consumer = new AtomicReference<>();
+    CompletableFuture<Void> done = streamWatchlist(consumer);
+    MockMvc mockMvc = MockMvcBuilders.standaloneSetup(stockController).build();
+
+    MvcResult result =
+        mockMvc
+            .perform(
+                get("/watchlist")
+                    .header("Authorization", "Bearer 123")
+                    .accept(MediaType.parseMediaType("application/x-ndjson")))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    consumer.get().accept(new SymbolQuote("AAPL", barAt("2020-05-01 15:55:00")));
+    done.completeExceptionally(new TimeoutException());
+    consumer.get().accept(new SymbolQuote("MSFT", barAt("2020-05-01 15:50:00")));
+
+    String body =
+        mockMvc
+            .perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    String[] lines = body.split("\n");
+    assertThat(lines).hasSize(1);
+    assertThat(objectMapper.readTree(lines[0]).get("symbol").asText()).isEqualTo("AAPL");
+  }
+
+  @Test
+  public void subscribeWatchlistShouldSubscribeWatchlistSymbols() {
+    when(stockService.getWatchlistSymbols("123")).thenReturn(Set.of("AAPL"));
+
+    stockController.subscribeWatchlist("Bearer 123");
+
+    verify(quoteHub).subscribe(eq(Set.of("AAPL")), any(QuoteHub.Sink.class));
   }
 
   @Test
@@ -42,4 +344,21 @@ class StockControllerTest {
 
     verify(stockService).removeStockFromWatchlist("123", symbol);
   }
+
+  /** Hands the consumer of the streamed watchlist out; the stream ends with the returned future. */
+  private CompletableFuture<Void> streamWatchlist(AtomicReference<Consumer<SymbolQuote>> consumer) {
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    when(stockService.streamWatchlist(eq("123"), any()))
+        .thenAnswer(
+            invocation -> {
+              consumer.set(invocation.getArgument(1));
+              return done;
+            });
+    return done;
+  }
+
+  private static Stock barAt(String timestamp) {
+    return new Stock(
+        StockSeries.builder().add(StockSeries.parseTimestamp(timestamp), 1, 2, 1, 2, 10).build());
+  }
 }
@@ -0,0 +1,97 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+class StockFetchCoalescerTest {
+
+  private MeterRegistry meterRegistry;
+  private StockFetchCoalescer stockFetchCoalescer;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    stockFetchCoalescer = new StockFetchCoalescer(meterRegistry);
+  }
+
+  @Test
+  public void shouldShareInFlightFetchBetweenConcurrentCallers() throws Exception {
+    Stock stock = new Stock();
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    CompletableFuture<Stock> leader =
+        CompletableFuture.supplyAsync(
+            () ->
+                stockFetchCoalescer.fetch(
+                    "MYSTOCK",
+                    () -> {
+                      loads.incrementAndGet();
+                      loading.countDown();
+                      await(release);
+                      return stock;
+                    }));
+    assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+    CompletableFuture<Stock> follower =
+        CompletableFuture.supplyAsync(
+            () ->
+                stockFetchCoalescer.fetch(
+                    "MYSTOCK",
+                    () -> {
+                      loads.incrementAndGet();
+                      return new Stock();
+                    }));
+    while (meterRegistry.counter("stock.upstream", "call", "coalesced").count() < 1) {
+      Thread.sleep(10);
+    }
+    release.countDown();
+
+    assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(stock);
+    assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo(stock);
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(meterRegistry.counter("stock.upstream", "call", "issued").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldIssueNewFetchOnceThePreviousOneCompleted() {
+    Stock first = new Stock();
+    Stock second = new Stock();
+
+    assertThat(stockFetchCoalescer.fetch("MYSTOCK", () -> first)).isEqualTo(first);
+    assertThat(stockFetchCoalescer.fetch("MYSTOCK", () -> second)).isEqualTo(second);
+    assertThat(meterRegistry.counter("stock.upstream", "call", "issued").count()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldPropagateFailureOfTheFetch() {
+    assertThatThrownBy(
+            () ->
+                stockFetchCoalescer.fetch(
+                    "MYSTOCK",
+                    () -> {
+                      throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+                    }))
+        .isInstanceOf(ResponseStatusException.class);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
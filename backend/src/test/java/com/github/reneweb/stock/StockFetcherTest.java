@@ -0,0 +1,148 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+@ExtendWith(MockitoExtension.class)
+class StockFetcherTest {
+  @Mock private StockCache stockCache;
+
+  private MeterRegistry meterRegistry;
+  private StockFetcher stockFetcher;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    stockFetcher = new StockFetcher(stockCache, meterRegistry, 4, 16, 500);
+  }
+
+  @AfterEach
+  public void teardown() {
+    stockFetcher.shutdown();
+  }
+
+  @Test
+  public void shouldFetchAllSymbols() {
+    Stock first = new Stock();
+    Stock second = new Stock();
+    when(stockCache.get("first")).thenReturn(first);
+    when(stockCache.get("second")).thenReturn(second);
+
+    Map<String, Stock> stocks = stockFetcher.fetchAll(List.of("first", "second"));
+    assertThat(stocks).isEqualTo(Map.of("first", first, "second", second));
+  }
+
+  @Test
+  public void shouldLeaveOutFailedSymbols() {
+    Stock stock = new Stock();
+    when(stockCache.get("valid")).thenReturn(stock);
+    when(stockCache.get("invalid"))
+        .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid stock symbol"));
+
+    Map<String, Stock> stocks = stockFetcher.fetchAll(List.of("valid", "invalid"));
+    assertThat(stocks).isEqualTo(Map.of("valid", stock));
+    assertThat(meterRegistry.counter("stock.fetch", "outcome", "failure").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldKeepFailureReasonsInResults() {
+    Stock stock = new Stock();
+    when(stockCache.get("valid")).thenReturn(stock);
+    when(stockCache.get("invalid"))
+        .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid stock symbol"));
+    when(stockCache.get("broken")).thenThrow(new IllegalStateException());
+
+    Map<String, StockResult> results =
+        stockFetcher.fetchResults(List.of("valid", "invalid", "broken"));
+
+    assertThat(results.keySet()).containsExactly("valid", "invalid", "broken");
+    assertThat(results.get("valid").getStock()).isEqualTo(stock);
+    assertThat(results.get("invalid").getStatus()).isEqualTo(400);
+    assertThat(results.get("invalid").getError()).isEqualTo("Invalid stock symbol");
+    assertThat(results.get("broken").getStatus()).isEqualTo(500);
+  }
+
+  @Test
+  public void shouldLeaveOutSymbolsExceedingTheDeadline() {
+    Stock stock = new Stock();
+    when(stockCache.get("fast")).thenReturn(stock);
+    when(stockCache.get("slow"))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(2000);
+              return new Stock();
+            });
+
+    Map<String, Stock> stocks = stockFetcher.fetchAll(List.of("fast", "slow"));
+    assertThat(stocks).isEqualTo(Map.of("fast", stock));
+    assertThat(meterRegistry.counter("stock.fetch", "outcome", "timeout").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldFailSymbolsThatDoNotFitIntoTheQueue() {
+    StockFetcher singleThreaded = new StockFetcher(stockCache, meterRegistry, 1, 1, 1000);
+    when(stockCache.get(anyString()))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(100);
+              return new Stock();
+            });
+
+    try {
+      Map<String, StockResult> results =
+          singleThreaded.fetchResults(List.of("running", "queued", "rejected"));
+
+      assertThat(results.get("running").getStock()).isNotNull();
+      assertThat(results.get("queued").getStock()).isNotNull();
+      assertThat(results.get("rejected").getStatus()).isEqualTo(503);
+    } finally {
+      singleThreaded.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldPassEachFetchedSymbolToTheConsumer() {
+    Stock stock = new Stock();
+    when(stockCache.get("valid")).thenReturn(stock);
+    when(stockCache.get("invalid"))
+        .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid stock symbol"));
+    List<SymbolQuote> quotes = new CopyOnWriteArrayList<>();
+
+    stockFetcher.fetchEach(List.of("valid", "invalid"), quotes::add).join();
+
+    assertThat(quotes).hasSize(1);
+    assertThat(quotes.get(0).getSymbol()).isEqualTo("valid");
+    assertThat(quotes.get(0).getStock()).isEqualTo(stock);
+  }
+
+  @Test
+  public void shouldStopPassingSymbolsToTheConsumerAfterTheDeadline() {
+    when(stockCache.get("slow"))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(1000);
+              return new Stock();
+            });
+    List<SymbolQuote> quotes = new CopyOnWriteArrayList<>();
+
+    stockFetcher.fetchEach(List.of("slow"), quotes::add).join();
+
+    assertThat(quotes).isEmpty();
+    assertThat(meterRegistry.counter("stock.fetch", "outcome", "timeout").count()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,32 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+class StockPayloadCacheTest {
+  private final StockPayloadCache stockPayloadCache =
+      new StockPayloadCache(
+          Jackson2ObjectMapperBuilder.json().build(), new SimpleMeterRegistry(), 10);
+
+  private final Stock stock =
+      new Stock(
+          StockSeries.builder()
+              .add(StockSeries.parseTimestamp("2020-05-01 10:25:00"), 1.5, 2, 1, 1.75, 100)
+              .priceScale(2)
+              .build());
+
+  @Test
+  public void shouldShareOnePayloadAcrossSymbolCasing() {
+    assertThat(stockPayloadCache.get("msft", stock)).isSameAs(stockPayloadCache.get("MSFT", stock));
+  }
+
+  @Test
+  public void shouldSerializeAgainForANewStock() {
+    StockPayloadCache.Payload payload = stockPayloadCache.get("MSFT", stock);
+
+    assertThat(stockPayloadCache.get("MSFT", new Stock(stock.getSeries()))).isNotSameAs(payload);
+  }
+}
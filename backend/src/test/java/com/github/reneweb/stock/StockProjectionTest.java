@@ -0,0 +1,65 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+class StockProjectionTest {
+  private final Stock stock =
+      new Stock(
+          StockSeries.builder()
+              .add(StockSeries.parseTimestamp("2020-05-01 16:00:00"), 3, 3.5, 2.5, 3.25, 300)
+              .add(StockSeries.parseTimestamp("2020-05-01 15:55:00"), 2, 2.5, 1.5, 2.25, 200)
+              .add(StockSeries.parseTimestamp("2020-05-01 15:50:00"), 1, 1.5, 0.5, 1.25, 100)
+              .priceScale(4)
+              .build());
+
+  @Test
+  public void shouldReturnSameStockWithoutParameters() {
+    assertThat(StockProjection.of(null, null, null, null).apply(stock)).isSameAs(stock);
+  }
+
+  @Test
+  public void shouldRestrictToInclusiveTimeRange() {
+    Stock projected =
+        StockProjection.of("2020-05-01 15:52:00", "2020-05-01 16:00:00", null, null).apply(stock);
+
+    assertThat(projected.getStockHistory().keySet())
+        .containsExactly("2020-05-01 16:00:00", "2020-05-01 15:55:00");
+  }
+
+  @Test
+  public void shouldReturnNewestBars() {
+    Stock projected = StockProjection.of(null, null, 1, null).apply(stock);
+
+    assertThat(projected.getStockHistory().keySet()).containsExactly("2020-05-01 16:00:00");
+  }
+
+  @Test
+  public void shouldSerializeSelectedFieldsOnly() throws Exception {
+    Stock projected = StockProjection.of(null, null, 1, List.of("close", "VOLUME")).apply(stock);
+
+    assertThat(new ObjectMapper().writeValueAsString(projected))
+        .isEqualTo(
+            "{\"Time Series (5min)\":{\"2020-05-01 16:00:00\":"
+                + "{\"4. close\":\"3.2500\",\"5. volume\":\"300\"}}}");
+  }
+
+  @Test
+  public void shouldRejectInvalidParameters() {
+    assertThatThrownBy(() -> StockProjection.of("yesterday", null, null, null))
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    assertThatThrownBy(
+            () -> StockProjection.of("2020-05-01 16:00:00", "2020-05-01 15:00:00", null, null))
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    assertThatThrownBy(() -> StockProjection.of(null, null, 0, null))
+        .isInstanceOf(ResponseStatusException.class);
+    assertThatThrownBy(() -> StockProjection.of(null, null, null, List.of("price")))
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+  }
+}
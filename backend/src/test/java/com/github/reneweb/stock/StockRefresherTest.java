@@ -0,0 +1,50 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+@ExtendWith(MockitoExtension.class)
+class StockRefresherTest {
+  @Mock private StockCache stockCache;
+  @Mock private SymbolPopularity symbolPopularity;
+
+  @Test
+  public void shouldPrefetchMostPopularSymbols() {
+    StockRefresher stockRefresher =
+        new StockRefresher(stockCache, symbolPopularity, true, 2, 60_000);
+    when(symbolPopularity.top(2)).thenReturn(List.of("AAPL", "MSFT"));
+    when(stockCache.prefetch("AAPL"))
+        .thenThrow(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR));
+    when(stockCache.prefetch("MSFT")).thenReturn(true);
+
+    stockRefresher.refresh();
+
+    verify(stockCache).prefetch("MSFT");
+  }
+
+  @Test
+  public void shouldNotRefreshIfDisabled() {
+    StockRefresher stockRefresher =
+        new StockRefresher(stockCache, symbolPopularity, false, 2, 60_000);
+
+    stockRefresher.refresh();
+
+    verifyNoInteractions(stockCache, symbolPopularity);
+  }
+
+  @Test
+  public void shouldRequirePositiveCallBudget() {
+    assertThatThrownBy(() -> new StockRefresher(stockCache, symbolPopularity, true, 2, 0))
+        .isInstanceOf(IllegalStateException.class);
+  }
+}
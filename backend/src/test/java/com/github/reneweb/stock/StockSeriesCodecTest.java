@@ -0,0 +1,71 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+import java.util.Locale;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+class StockSeriesCodecTest {
+  private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+  @Test
+  public void shouldRoundTripParsedSeriesCompactly() throws Exception {
+    DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    LocalDateTime start = LocalDateTime.of(2020, 5, 1, 9, 35);
+    StringBuilder body = new StringBuilder("{\"Time Series (5min)\":{");
+    for (int i = 0; i < 100; i++) {
+      String price = String.format(Locale.ROOT, "%.4f", 174 + (i % 17) * 0.0731);
+      body.append(i == 0 ? "\"" : ",\"")
+          .append(format.format(start.plusMinutes(5L * i)))
+          .append("\":{\"1. open\":\"")
+          .append(price)
+          .append("\",\"2. high\":\"")
+          .append(price)
+          .append("\",\"3. low\":\"")
+          .append(price)
+          .append("\",\"4. close\":\"")
+          .append(price)
+          .append("\",\"5. volume\":\"")
+          .append(20000 + i * 131)
+          .append("\"}");
+    }
+    body.append("}}");
+    Stock stock =
+        new AlphaVantageParser(objectMapper)
+            .parse(body.toString().getBytes(StandardCharsets.UTF_8));
+
+    byte[] bytes = StockSeriesCodec.encode(stock.getSeries());
+    StockSeries decoded = StockSeriesCodec.decode(bytes);
+
+    assertThat(objectMapper.writeValueAsString(new Stock(decoded)))
+        .isEqualTo(objectMapper.writeValueAsString(stock));
+    assertThat(bytes.length).isLessThan(20 * stock.getSeries().size() + 16);
+  }
+
+  @Test
+  public void shouldRoundTripSelectedFieldsAndUnscaledPrices() throws Exception {
+    StockSeries series =
+        StockSeries.builder()
+            .add(StockSeries.parseTimestamp("2020-05-01 15:55:00"), 0.1, 0.3, 1e-12, 0.2, 7)
+            .add(StockSeries.parseTimestamp("2020-05-01 16:00:00"), -1.5, 2, -3, 1.25, 0)
+            .priceScale(12)
+            .build()
+            .withFields(EnumSet.of(StockSeries.Field.LOW, StockSeries.Field.VOLUME));
+
+    StockSeries decoded = StockSeriesCodec.decode(StockSeriesCodec.encode(series));
+
+    assertThat(decoded.getFields()).isEqualTo(series.getFields());
+    assertThat(decoded.getPriceScale()).isEqualTo(12);
+    assertThat(decoded.getLow(0)).isEqualTo(1e-12);
+    assertThat(decoded.getOpen(1)).isEqualTo(-1.5);
+    assertThat(decoded.getTimestamp(1)).isEqualTo(series.getTimestamp(1));
+    assertThat(StockSeriesCodec.decode(StockSeriesCodec.encode(StockSeries.EMPTY)).isEmpty())
+        .isTrue();
+  }
+}
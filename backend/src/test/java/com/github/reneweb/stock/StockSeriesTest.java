@@ -0,0 +1,78 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+class StockSeriesTest {
+  private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+  private final String stockJson =
+      "{\"Time Series (5min)\":{"
+          + "\"2020-05-01 16:00:00\":{\"1. open\":\"289.2600\",\"2. high\":\"289.3400\","
+          + "\"3. low\":\"288.5000\",\"4. close\":\"289.0700\",\"5. volume\":\"1305634\"},"
+          + "\"2020-05-01 15:55:00\":{\"1. open\":\"288.9200\",\"2. high\":\"289.5000\","
+          + "\"3. low\":\"288.7500\",\"4. close\":\"289.2500\",\"5. volume\":\"546843\"}}}";
+
+  @Test
+  public void shouldReadSeriesSortedByTime() throws Exception {
+    StockSeries series = objectMapper.readValue(stockJson, Stock.class).getSeries();
+
+    assertThat(series.size()).isEqualTo(2);
+    assertThat(series.getTimestamp(0))
+        .isEqualTo(Instant.parse("2020-05-01T19:55:00Z").getEpochSecond());
+    assertThat(series.getTimestamp(1))
+        .isEqualTo(Instant.parse("2020-05-01T20:00:00Z").getEpochSecond());
+    assertThat(series.getOpen(1)).isEqualTo(289.26);
+    assertThat(series.getClose(0)).isEqualTo(289.25);
+    assertThat(series.getVolume(1)).isEqualTo(1305634);
+  }
+
+  @Test
+  public void shouldWriteTheSameJson() throws Exception {
+    Stock stock = objectMapper.readValue(stockJson, Stock.class);
+
+    assertThat(objectMapper.writeValueAsString(stock)).isEqualTo(stockJson);
+  }
+
+  @Test
+  public void shouldProvideHistoryView() throws Exception {
+    Stock stock = objectMapper.readValue(stockJson, Stock.class);
+
+    assertThat(stock.getStockHistory().keySet())
+        .containsExactly("2020-05-01 16:00:00", "2020-05-01 15:55:00");
+    assertThat(stock.getStockHistory().get("2020-05-01 16:00:00").getLow()).isEqualTo("288.5000");
+  }
+
+  @Test
+  public void shouldReadStandaloneEntry() throws Exception {
+    StockEntry entry =
+        objectMapper.readValue(
+            "{\"1. open\":\"289.2600\",\"4. close\":\"289.0700\"}", StockEntry.class);
+
+    assertThat(entry.getOpen()).isEqualTo("289.2600");
+    assertThat(entry.getClose()).isEqualTo("289.0700");
+    assertThat(entry.getHigh()).isNull();
+  }
+
+  @Test
+  public void shouldReadStockWithoutSeriesAsEmpty() throws Exception {
+    Stock stock = objectMapper.readValue("{\"Meta Data\":{}}", Stock.class);
+
+    assertThat(stock.getSeries().isEmpty()).isTrue();
+  }
+
+  @Test
+  public void shouldRejectInvalidTimestamps() {
+    assertThatThrownBy(
+            () ->
+                objectMapper.readValue(
+                    "{\"Time Series (5min)\":{\"time\":{\"1. open\":\"1\"}}}", Stock.class))
+        .isInstanceOf(JsonMappingException.class);
+  }
+}
@@ -1,34 +1,40 @@
 package com.github.reneweb.stock;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.lenient;
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.github.reneweb.facebook.FBAccessTokenValidator;
 import com.github.reneweb.facebook.FBTokenData;
-import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Timer;
-import io.micrometer.core.instrument.noop.NoopTimer;
-import java.util.HashSet;
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.function.Supplier;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 
 @ExtendWith(MockitoExtension.class)
 class StockServiceTest {
   @Mock private FBAccessTokenValidator fbAccessTokenValidator;
-  @Mock private StockClient stockClient;
-  @Mock private StockRepository stockRepository;
-  @Mock private MeterRegistry meterRegistry;
+  @Mock private StockCache stockCache;
+  @Mock private StockFetcher stockFetcher;
+  @Mock private SymbolIndex symbolIndex;
+  @Mock private WatchlistCache watchlistCache;
+
+  @Mock private WatchlistWriter watchlistWriter;
 
   @InjectMocks private StockService stockService;
 
@@ -37,132 +43,146 @@ class StockServiceTest {
   private final String symbol = "myStock";
   private final Stock stock = new Stock();
 
+  @BeforeEach
+  public void setup() {
+    lenient()
+        .when(watchlistWriter.withPendingChanges(any(), any()))
+        .thenAnswer(invocation -> invocation.getArgument(1));
+  }
+
   @Test
   public void shouldGetStock() {
-    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(stock);
+    when(stockCache.get(symbol)).thenReturn(stock);
     Stock stockResult = stockService.getStock(symbol);
     assertThat(stockResult).isEqualTo(stock);
   }
 
+  @Test
+  public void shouldGetNormalizedSymbolsInBatch() {
+    Map<String, StockResult> results = Map.of("AAPL", StockResult.success(stock));
+    when(stockFetcher.fetchResults(Set.of("AAPL", "MSFT"))).thenReturn(results);
+
+    assertThat(stockService.getStocks(List.of(" aapl", "MSFT", "AAPL", ""))).isEqualTo(results);
+  }
+
+  @Test
+  public void shouldRejectBatchWithoutOrWithTooManySymbols() {
+    List<String> tooMany =
+        IntStream.rangeClosed(0, StockService.MAX_BATCH_SYMBOLS)
+            .mapToObj(i -> "S" + i)
+            .collect(Collectors.toList());
+
+    assertThatThrownBy(() -> stockService.getStocks(List.of(" ")))
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    assertThatThrownBy(() -> stockService.getStocks(tooMany))
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    verifyNoInteractions(stockFetcher);
+  }
+
   @Test
   public void shouldGetWatchlist() {
     FBTokenData fbTokenData = new FBTokenData("myAppId", userId, false);
     when(fbAccessTokenValidator.validate(userAccessToken)).thenReturn(fbTokenData);
-    when(stockRepository.findById(userId))
-        .thenReturn(Optional.of(new StockWatchlistEntity(userId, Set.of(symbol))));
-    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(stock);
-    mockTimer(true, false, false);
+    when(watchlistCache.get(userId)).thenReturn(Set.of(symbol));
+    when(stockFetcher.fetchAll(Set.of(symbol))).thenReturn(Map.of(symbol, stock));
 
     Set<Stock> stocks = stockService.getWatchlist(userAccessToken);
     assertThat(Set.of(stock)).isEqualTo(stocks);
   }
 
+  @Test
+  public void shouldGetWatchlistStocksBySymbol() {
+    FBTokenData fbTokenData = new FBTokenData("myAppId", userId, false);
+    when(fbAccessTokenValidator.validate(userAccessToken)).thenReturn(fbTokenData);
+    when(watchlistCache.get(userId)).thenReturn(Set.of(symbol));
+    when(stockFetcher.fetchAll(Set.of(symbol))).thenReturn(Map.of(symbol, stock));
+
+    assertThat(stockService.getWatchlistStocks(userAccessToken)).isEqualTo(Map.of(symbol, stock));
+  }
+
+  @Test
+  public void shouldStreamWatchlist() {
+    FBTokenData fbTokenData = new FBTokenData("myAppId", userId, false);
+    CompletableFuture<Void> done = CompletableFuture.completedFuture(null);
+    Consumer<SymbolQuote> consumer = quote -> {};
+    when(fbAccessTokenValidator.validate(userAccessToken)).thenReturn(fbTokenData);
+    when(watchlistCache.get(userId)).thenReturn(Set.of(symbol));
+    when(stockFetcher.fetchEach(Set.of(symbol), consumer)).thenReturn(done);
+
+    assertThat(stockService.streamWatchlist(userAccessToken, consumer)).isEqualTo(done);
+  }
+
   @Test
   public void shouldReturnEmptySetIfWatchlistNotFound() {
     FBTokenData fbTokenData = new FBTokenData("myAppId", userId, false);
     when(fbAccessTokenValidator.validate(userAccessToken)).thenReturn(fbTokenData);
-    when(stockRepository.findById(userId)).thenReturn(Optional.empty());
-    mockTimer(true, false, false);
+    when(watchlistCache.get(userId)).thenReturn(Set.of());
 
     Set<Stock> stocks = stockService.getWatchlist(userAccessToken);
     assertThat(Set.of()).isEqualTo(stocks);
   }
 
   @Test
-  public void shouldAddStockToExistingWatchlist() {
-    StockWatchlistEntity stockWatchlistEntity = new StockWatchlistEntity(userId, new HashSet<>());
+  public void shouldAddStockToWatchlist() {
     FBTokenData fbTokenData = new FBTokenData("myAppId", userId, false);
     when(fbAccessTokenValidator.validate(userAccessToken)).thenReturn(fbTokenData);
-    when(stockRepository.findById(userId)).thenReturn(Optional.of(stockWatchlistEntity));
-    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(stock);
-    mockTimer(true, true, false);
+    when(stockCache.get("MYSTOCK", FetchPriority.VALIDATION)).thenReturn(stock);
 
-    stockService.addStockToWatchlist(userAccessToken, symbol);
+    stockService.addStockToWatchlist(userAccessToken, " " + symbol + " ");
 
-    ArgumentCaptor<StockWatchlistEntity> captor =
-        ArgumentCaptor.forClass(StockWatchlistEntity.class);
-    verify(stockRepository).save(captor.capture());
-    assertThat(captor.getValue())
-        .isEqualToComparingFieldByFieldRecursively(
-            new StockWatchlistEntity(userId, Set.of(symbol)));
+    verify(watchlistWriter).addSymbol(userId, "MYSTOCK");
+    verify(watchlistCache).added(userId, "MYSTOCK");
   }
 
   @Test
-  public void shouldCreateNewWatchlistWithSymbolIfNotExisting() {
+  public void shouldNotFetchStockToAddKnownSymbol() {
     FBTokenData fbTokenData = new FBTokenData("myAppId", userId, false);
     when(fbAccessTokenValidator.validate(userAccessToken)).thenReturn(fbTokenData);
-    when(stockRepository.findById(userId)).thenReturn(Optional.empty());
-    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(stock);
-    mockTimer(true, true, false);
+    when(symbolIndex.contains("MYSTOCK")).thenReturn(true);
 
     stockService.addStockToWatchlist(userAccessToken, symbol);
 
-    ArgumentCaptor<StockWatchlistEntity> captor =
-        ArgumentCaptor.forClass(StockWatchlistEntity.class);
-    verify(stockRepository).save(captor.capture());
-    assertThat(captor.getValue())
-        .isEqualToComparingFieldByFieldRecursively(
-            new StockWatchlistEntity(userId, Set.of(symbol)));
+    verifyNoInteractions(stockCache);
+    verify(watchlistWriter).addSymbol(userId, "MYSTOCK");
+    verify(watchlistCache).added(userId, "MYSTOCK");
   }
 
   @Test
-  public void shouldRemoveStockIfWatchlistExists() {
-    String anotherSymbol = "anotherSymbol";
-    HashSet<String> symbols = new HashSet<>();
-    symbols.add(symbol);
-    symbols.add(anotherSymbol);
-    StockWatchlistEntity stockWatchlistEntity = new StockWatchlistEntity(userId, symbols);
+  public void shouldNotAddUnknownSymbolIfValidationFails() {
     FBTokenData fbTokenData = new FBTokenData("myAppId", userId, false);
     when(fbAccessTokenValidator.validate(userAccessToken)).thenReturn(fbTokenData);
-    when(stockRepository.findById(userId)).thenReturn(Optional.of(stockWatchlistEntity));
-    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(stock);
-    mockTimer(true, true, false);
-
-    stockService.removeStockFromWatchlist(userAccessToken, symbol);
-
-    ArgumentCaptor<StockWatchlistEntity> captor =
-        ArgumentCaptor.forClass(StockWatchlistEntity.class);
-    verify(stockRepository).save(captor.capture());
-    assertThat(captor.getValue())
-        .isEqualToComparingFieldByFieldRecursively(
-            new StockWatchlistEntity(userId, Set.of(anotherSymbol)));
+    when(stockCache.get("MYSTOCK", FetchPriority.VALIDATION))
+        .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid stock symbol"));
+
+    assertThatThrownBy(() -> stockService.addStockToWatchlist(userAccessToken, symbol))
+        .isInstanceOf(ResponseStatusException.class);
+
+    verifyNoInteractions(watchlistWriter);
   }
 
   @Test
-  public void shouldRemoveEntryIfWatchlistExistsAndEmptyAfterRemovalOperation() {
-    HashSet<String> symbols = new HashSet<>();
-    symbols.add(symbol);
-    StockWatchlistEntity stockWatchlistEntity = new StockWatchlistEntity(userId, symbols);
+  public void shouldRemoveStockFromWatchlist() {
     FBTokenData fbTokenData = new FBTokenData("myAppId", userId, false);
     when(fbAccessTokenValidator.validate(userAccessToken)).thenReturn(fbTokenData);
-    when(stockRepository.findById(userId)).thenReturn(Optional.of(stockWatchlistEntity));
-    when(stockClient.fetchStockBySymbol(symbol)).thenReturn(stock);
-    mockTimer(true, false, true);
 
-    stockService.removeStockFromWatchlist(userAccessToken, symbol);
+    stockService.removeStockFromWatchlist(userAccessToken, " " + symbol);
 
-    ArgumentCaptor<StockWatchlistEntity> captor =
-        ArgumentCaptor.forClass(StockWatchlistEntity.class);
-    verify(stockRepository).delete(captor.capture());
-    assertThat(captor.getValue())
-        .isEqualToComparingFieldByFieldRecursively(new StockWatchlistEntity(userId, Set.of()));
+    verify(watchlistWriter).removeSymbol(userId, "MYSTOCK");
+    verify(watchlistCache).removed(userId, "MYSTOCK");
+    verifyNoInteractions(stockCache);
   }
 
-  private void mockTimer(boolean withFindById, boolean withSave, boolean withDelete) {
-    Timer timerSupplier = mock(NoopTimer.class);
-    lenient().doCallRealMethod().when(timerSupplier).record(any(Supplier.class));
-
-    Timer timerRunnable = mock(NoopTimer.class);
-    lenient().doCallRealMethod().when(timerRunnable).record(any(Runnable.class));
-
-    if (withFindById) {
-      when(meterRegistry.timer("dynamodb", "operation", "findById")).thenReturn(timerSupplier);
-    }
-    if (withSave) {
-      when(meterRegistry.timer("dynamodb", "operation", "save")).thenReturn(timerSupplier);
-    }
-    if (withDelete) {
-      when(meterRegistry.timer("dynamodb", "operation", "delete")).thenReturn(timerRunnable);
-    }
+  @Test
+  public void shouldRejectBlankSymbolForWatchlist() {
+    FBTokenData fbTokenData = new FBTokenData("myAppId", userId, false);
+    when(fbAccessTokenValidator.validate(userAccessToken)).thenReturn(fbTokenData);
+
+    assertThatThrownBy(() -> stockService.addStockToWatchlist(userAccessToken, " "))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    assertThatThrownBy(() -> stockService.removeStockFromWatchlist(userAccessToken, " "))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.BAD_REQUEST);
+    verifyNoInteractions(watchlistWriter, watchlistCache);
   }
 }
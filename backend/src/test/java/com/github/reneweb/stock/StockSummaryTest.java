@@ -0,0 +1,65 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class StockSummaryTest {
+
+  @Test
+  public void shouldAggregateLatestTradingDay() {
+    StockSeries series =
+        StockSeries.builder()
+            .add(StockSeries.parseTimestamp("2020-04-30 16:00:00"), 280, 300, 250, 290, 1000)
+            .add(StockSeries.parseTimestamp("2020-05-01 09:35:00"), 200, 210, 195, 205, 100)
+            .add(StockSeries.parseTimestamp("2020-05-01 09:40:00"), 205, 220, 204, 215.5, 200)
+            .add(StockSeries.parseTimestamp("2020-05-01 09:45:00"), 215.5, 216, 190, 210, 300)
+            .priceScale(4)
+            .build();
+
+    StockSummary summary = StockSummary.of(series);
+
+    assertThat(summary.getTime()).isEqualTo("2020-05-01 09:45:00");
+    assertThat(summary.getLastPrice()).isEqualTo(new BigDecimal("210.0000"));
+    assertThat(summary.getPreviousClose()).isEqualTo(new BigDecimal("290.0000"));
+    assertThat(summary.getChange()).isEqualTo(new BigDecimal("-80.0000"));
+    assertThat(summary.getChangePercent()).isEqualTo(new BigDecimal("-27.59"));
+    assertThat(summary.getDayHigh()).isEqualTo(new BigDecimal("220.0000"));
+    assertThat(summary.getDayLow()).isEqualTo(new BigDecimal("190.0000"));
+    assertThat(summary.getVolume()).isEqualTo(600);
+  }
+
+  @Test
+  public void shouldLeaveChangeOutWithoutPreviousSession() {
+    StockSeries series =
+        StockSeries.builder()
+            .add(StockSeries.parseTimestamp("2020-05-01 09:35:00"), 200, 210, 195, 205, 100)
+            .add(StockSeries.parseTimestamp("2020-05-01 09:40:00"), 205, 220, 204, 215.5, 200)
+            .priceScale(4)
+            .build();
+
+    StockSummary summary = StockSummary.of(series);
+
+    assertThat(summary.getLastPrice()).isEqualTo(new BigDecimal("215.5000"));
+    assertThat(summary.getPreviousClose()).isNull();
+    assertThat(summary.getChange()).isNull();
+    assertThat(summary.getChangePercent()).isNull();
+    assertThat(summary.getVolume()).isEqualTo(300);
+  }
+
+  @Test
+  public void shouldComputeSummaryOncePerStock() {
+    Stock stock =
+        new Stock(
+            StockSeries.builder()
+                .add(StockSeries.parseTimestamp("2020-05-01 09:35:00"), 1, 2, 1, 2, 10)
+                .build());
+
+    assertThat(stock.getSummary()).isSameAs(stock.getSummary());
+    assertThat(new Stock().getSummary()).isNull();
+    assertThat(StockSummary.bySymbol(Map.of("myStock", stock, "empty", new Stock())))
+        .isEqualTo(Map.of("myStock", stock.getSummary()));
+  }
+}
@@ -0,0 +1,30 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+class SymbolIndexTest {
+
+  private final SymbolIndex symbolIndex =
+      new SymbolIndex(
+          new ByteArrayResource("# comment\nAAPL\n\n  msft \n".getBytes(StandardCharsets.UTF_8)));
+
+  @Test
+  public void shouldContainSymbolsFromFileIgnoringCase() {
+    assertThat(symbolIndex.contains("AAPL")).isTrue();
+    assertThat(symbolIndex.contains("aapl")).isTrue();
+    assertThat(symbolIndex.contains("MSFT")).isTrue();
+    assertThat(symbolIndex.contains("# comment")).isFalse();
+    assertThat(symbolIndex.contains("")).isFalse();
+  }
+
+  @Test
+  public void shouldContainAddedSymbols() {
+    assertThat(symbolIndex.contains("IBM")).isFalse();
+    symbolIndex.add("ibm");
+    assertThat(symbolIndex.contains("IBM")).isTrue();
+  }
+}
@@ -0,0 +1,72 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class SymbolOwnershipTest {
+  private final List<String> symbols =
+      IntStream.range(0, 3000).mapToObj(i -> "SYM" + i).collect(Collectors.toList());
+
+  @Test
+  public void shouldOwnEverySymbolWithoutConfiguredNodes() {
+    SymbolOwnership symbolOwnership = new SymbolOwnership("http://a:8080", " ", 100);
+
+    assertThat(symbolOwnership.ownerOf("AAPL")).isNull();
+    assertThat(symbolOwnership.isOwner("AAPL")).isTrue();
+  }
+
+  @Test
+  public void shouldSpreadSymbolsOverNodes() {
+    SymbolOwnership symbolOwnership =
+        new SymbolOwnership("http://a:8080", "http://a:8080, http://b:8080,http://c:8080", 100);
+
+    Map<String, Long> counts =
+        symbols.stream()
+            .collect(Collectors.groupingBy(symbolOwnership::ownerOf, Collectors.counting()));
+
+    assertThat(symbolOwnership.getMembers())
+        .containsExactly("http://a:8080", "http://b:8080", "http://c:8080");
+    assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(700L, 1300L));
+    assertThat(symbols.stream().filter(symbolOwnership::isOwner).count())
+        .isEqualTo(counts.get("http://a:8080"));
+  }
+
+  @Test
+  public void shouldRejectSelfMissingFromNodes() {
+    assertThatThrownBy(
+            () -> new SymbolOwnership("http://a:8080", "http://b:8080,http://c:8080", 100))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void shouldOnlyMoveSymbolsOfJoiningNode() {
+    SymbolOwnership symbolOwnership =
+        new SymbolOwnership("http://a:8080", "http://a:8080,http://b:8080,http://c:8080", 100);
+    Map<String, String> before = owners(symbolOwnership);
+
+    symbolOwnership.setMembers(
+        List.of("http://a:8080", "http://b:8080", "http://c:8080", "http://d:8080"));
+    Map<String, String> after = owners(symbolOwnership);
+
+    long moved = symbols.stream().filter(s -> !before.get(s).equals(after.get(s))).count();
+    assertThat(moved).isBetween(450L, 1050L);
+    assertThat(symbols.stream().filter(s -> !before.get(s).equals(after.get(s))))
+        .allSatisfy(symbol -> assertThat(after.get(symbol)).isEqualTo("http://d:8080"));
+
+    symbolOwnership.setMembers(List.of("http://a:8080", "http://b:8080", "http://c:8080"));
+    assertThat(owners(symbolOwnership)).isEqualTo(before);
+  }
+
+  private Map<String, String> owners(SymbolOwnership symbolOwnership) {
+    Map<String, String> owners = new HashMap<>();
+    symbols.forEach(symbol -> owners.put(symbol, symbolOwnership.ownerOf(symbol)));
+    return owners;
+  }
+}
@@ -0,0 +1,45 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SymbolPopularityTest {
+  @Mock private SymbolWatchers symbolWatchers;
+
+  private SymbolPopularity symbolPopularity;
+
+  @BeforeEach
+  public void setup() {
+    symbolPopularity = new SymbolPopularity(symbolWatchers, 10, 100);
+  }
+
+  @Test
+  public void shouldRankByWatchlistsAndRequests() {
+    when(symbolWatchers.top(100)).thenReturn(Map.of("aapl", 1L, "AAPL", 1L, "MSFT", 1L));
+    symbolPopularity.refreshWatchlistCounts();
+    for (int i = 0; i < 15; i++) {
+      symbolPopularity.recordRequest("tsla");
+    }
+
+    assertThat(symbolPopularity.top(2)).containsExactly("AAPL", "TSLA");
+  }
+
+  @Test
+  public void shouldLetRequestCountsFadeOut() {
+    symbolPopularity.recordRequest("AAPL");
+    symbolPopularity.recordRequest("AAPL");
+    symbolPopularity.recordRequest("MSFT");
+
+    assertThat(symbolPopularity.top(5)).containsExactly("AAPL", "MSFT");
+    assertThat(symbolPopularity.top(5)).containsExactly("AAPL");
+    assertThat(symbolPopularity.top(5)).isEmpty();
+  }
+}
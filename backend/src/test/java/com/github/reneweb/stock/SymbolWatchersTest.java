@@ -0,0 +1,225 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SymbolWatchersTest {
+  @Mock private AmazonDynamoDB amazonDynamoDB;
+
+  @TempDir Path directory;
+
+  private final SymbolOwnership symbolOwnership = new SymbolOwnership("http://a:8080", "", 100);
+  private SymbolWatchers symbolWatchers;
+
+  @BeforeEach
+  public void setup() {
+    symbolWatchers = symbolWatchers(symbolOwnership);
+  }
+
+  @Test
+  public void shouldReadTopCountsFromIndex() {
+    Map<String, AttributeValue> lastKey = Map.of("symbol", new AttributeValue("AAPL"));
+    when(amazonDynamoDB.query(any(QueryRequest.class)))
+        .thenReturn(
+            new QueryResult().withItems(List.of(count("AAPL", 3))).withLastEvaluatedKey(lastKey))
+        .thenReturn(new QueryResult().withItems(List.of(count("MSFT", 1), count("IBM", -1))));
+
+    Map<String, Long> counts = symbolWatchers.top(5);
+
+    assertThat(counts).isEqualTo(Map.of("AAPL", 3L, "MSFT", 1L));
+    ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+    verify(amazonDynamoDB, times(2)).query(captor.capture());
+    assertThat(captor.getAllValues().get(0).getIndexName()).isEqualTo("watchers-index");
+    assertThat(captor.getAllValues().get(0).getScanIndexForward()).isFalse();
+    assertThat(captor.getAllValues().get(0).getLimit()).isEqualTo(5);
+    assertThat(captor.getAllValues().get(1).getLimit()).isEqualTo(4);
+    assertThat(captor.getAllValues().get(1).getExclusiveStartKey()).isEqualTo(lastKey);
+    verify(amazonDynamoDB, never()).scan(any(ScanRequest.class));
+  }
+
+  @Test
+  public void shouldWriteSummedChangesWithNextFlush() {
+    when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class))).thenReturn(watchers(2));
+
+    symbolWatchers.added("user1", "AAPL");
+    symbolWatchers.added("user2", "AAPL");
+    symbolWatchers.added("user3", "MSFT");
+    symbolWatchers.removed("user3", "MSFT");
+    verifyNoInteractions(amazonDynamoDB);
+    symbolWatchers.flush();
+
+    ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(amazonDynamoDB).updateItem(captor.capture());
+    assertThat(captor.getValue().getKey()).isEqualTo(Map.of("symbol", new AttributeValue("AAPL")));
+    assertThat(captor.getValue().getUpdateExpression())
+        .isEqualTo("ADD watchers :delta SET ranking = :ranking");
+    assertThat(captor.getValue().getExpressionAttributeValues().get(":delta").getN())
+        .isEqualTo("2");
+    verify(amazonDynamoDB, never()).deleteItem(any(DeleteItemRequest.class));
+  }
+
+  @Test
+  public void shouldDeleteCountsThatAreNotPositive() {
+    when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class))).thenReturn(watchers(-1));
+    when(amazonDynamoDB.deleteItem(any(DeleteItemRequest.class)))
+        .thenThrow(new ConditionalCheckFailedException("conditional check failed"));
+
+    symbolWatchers.removed("user1", "AAPL");
+    symbolWatchers.flush();
+
+    ArgumentCaptor<DeleteItemRequest> captor = ArgumentCaptor.forClass(DeleteItemRequest.class);
+    verify(amazonDynamoDB).deleteItem(captor.capture());
+    assertThat(captor.getValue().getConditionExpression()).isEqualTo("watchers <= :zero");
+  }
+
+  @Test
+  public void shouldKeepChangesThatCouldNotBeWritten() {
+    when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class)))
+        .thenThrow(new RuntimeException("unavailable"))
+        .thenReturn(watchers(2));
+
+    symbolWatchers.added("user1", "AAPL");
+    symbolWatchers.flush();
+    symbolWatchers.added("user2", "AAPL");
+    symbolWatchers.flush();
+
+    ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(amazonDynamoDB, times(2)).updateItem(captor.capture());
+    assertThat(captor.getAllValues().get(1).getExpressionAttributeValues().get(":delta").getN())
+        .isEqualTo("2");
+  }
+
+  @Test
+  public void shouldReplayJournalAfterRestart() {
+    symbolWatchers.added("user1", "AAPL");
+    when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class))).thenReturn(watchers(1));
+
+    symbolWatchers(symbolOwnership).flush();
+
+    ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(amazonDynamoDB).updateItem(captor.capture());
+    assertThat(captor.getValue().getKey()).isEqualTo(Map.of("symbol", new AttributeValue("AAPL")));
+  }
+
+  @Test
+  public void shouldReconcileCountsWithWatchlists() {
+    when(amazonDynamoDB.scan(any(ScanRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              ScanRequest request = invocation.getArgument(0);
+              if (request.getTableName().equals("Watchlist")) {
+                return new ScanResult()
+                    .withItems(
+                        List.of(
+                            watchlist("AAPL", "MSFT"),
+                            watchlist("AAPL"),
+                            watchlist("IBM", "TSLA")));
+              }
+              return new ScanResult()
+                  .withItems(
+                      List.of(
+                          count("AAPL", 1), count("MSFT", 1), count("IBM", -2), count("GE", 3)));
+            });
+    symbolWatchers.reconcile();
+
+    ArgumentCaptor<UpdateItemRequest> updates = ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(amazonDynamoDB, times(3)).updateItem(updates.capture());
+    Map<String, String> repaired = new HashMap<>();
+    Map<String, String> conditions = new HashMap<>();
+    updates
+        .getAllValues()
+        .forEach(
+            update -> {
+              String symbol = update.getKey().get("symbol").getS();
+              repaired.put(symbol, update.getExpressionAttributeValues().get(":count").getN());
+              conditions.put(symbol, update.getConditionExpression());
+            });
+    assertThat(repaired).isEqualTo(Map.of("AAPL", "2", "IBM", "1", "TSLA", "1"));
+    assertThat(conditions.get("IBM")).isEqualTo("watchers = :seen");
+    assertThat(conditions.get("TSLA")).isEqualTo("attribute_not_exists(symbol)");
+
+    ArgumentCaptor<DeleteItemRequest> deletes = ArgumentCaptor.forClass(DeleteItemRequest.class);
+    verify(amazonDynamoDB).deleteItem(deletes.capture());
+    assertThat(deletes.getValue().getKey()).isEqualTo(Map.of("symbol", new AttributeValue("GE")));
+  }
+
+  @Test
+  public void shouldSkipCountsThatChangeWhileReconciling() {
+    when(amazonDynamoDB.scan(any(ScanRequest.class)))
+        .thenReturn(new ScanResult().withItems(List.of(count("AAPL", 1))))
+        .thenReturn(new ScanResult().withItems(List.of(watchlist("AAPL"), watchlist("AAPL"))))
+        .thenReturn(new ScanResult().withItems(List.of(count("AAPL", 2))));
+
+    symbolWatchers.reconcile();
+
+    verify(amazonDynamoDB, never()).updateItem(any(UpdateItemRequest.class));
+  }
+
+  @Test
+  public void shouldReconcileOnlyOnOneNode() {
+    SymbolOwnership cluster =
+        new SymbolOwnership("http://a:8080", "http://a:8080,http://b:8080", 100);
+    SymbolOwnership other =
+        new SymbolOwnership("http://b:8080", "http://a:8080,http://b:8080", 100);
+    SymbolWatchers notOwning =
+        symbolWatchers(cluster.isOwner(SymbolWatchers.TABLE) ? other : cluster);
+
+    notOwning.reconcile();
+
+    verifyNoInteractions(amazonDynamoDB);
+  }
+
+  private SymbolWatchers symbolWatchers(SymbolOwnership symbolOwnership) {
+    return new SymbolWatchers(
+        amazonDynamoDB,
+        symbolOwnership,
+        new SimpleMeterRegistry(),
+        directory.resolve("watchers.log").toString());
+  }
+
+  private static Map<String, AttributeValue> count(String symbol, long watchers) {
+    return Map.of(
+        "symbol",
+        new AttributeValue(symbol),
+        "watchers",
+        new AttributeValue().withN(Long.toString(watchers)));
+  }
+
+  private static Map<String, AttributeValue> watchlist(String... symbols) {
+    return Map.of("symbols", new AttributeValue().withSS(symbols));
+  }
+
+  private static UpdateItemResult watchers(long watchers) {
+    return new UpdateItemResult()
+        .withAttributes(Map.of("watchers", new AttributeValue().withN(Long.toString(watchers))));
+  }
+}
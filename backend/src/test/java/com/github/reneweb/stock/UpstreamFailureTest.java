@@ -0,0 +1,86 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.common.CompositeCustomizer;
+import io.github.resilience4j.common.circuitbreaker.configuration.CircuitBreakerConfigurationProperties;
+import io.github.resilience4j.common.retry.configuration.RetryConfigurationProperties;
+import io.github.resilience4j.retry.Retry;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+class UpstreamFailureTest {
+  private Retry retry;
+  private CircuitBreaker circuitBreaker;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    Properties properties =
+        PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"));
+    Binder binder = new Binder(new MapConfigurationPropertySource(properties));
+
+    RetryConfigurationProperties retryProperties =
+        binder.bind("resilience4j.retry", RetryConfigurationProperties.class).get();
+    retry =
+        Retry.of(
+            "StockClient",
+            retryProperties.createRetryConfig("StockClient", new CompositeCustomizer<>(List.of())));
+
+    CircuitBreakerConfigurationProperties circuitBreakerProperties =
+        binder
+            .bind("resilience4j.circuitbreaker", CircuitBreakerConfigurationProperties.class)
+            .get();
+    circuitBreaker =
+        CircuitBreaker.of(
+            "StockClient",
+            circuitBreakerProperties.createCircuitBreakerConfig(
+                "StockClient",
+                circuitBreakerProperties.getInstances().get("StockClient"),
+                new CompositeCustomizer<>(List.of())));
+  }
+
+  @Test
+  public void shouldNotRetryOrRecordInvalidSymbols() {
+    AtomicInteger calls = new AtomicInteger();
+
+    assertThatThrownBy(() -> call(calls, HttpStatus.BAD_REQUEST))
+        .isInstanceOf(ResponseStatusException.class);
+
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldRetryAndRecordUpstreamErrors() {
+    AtomicInteger calls = new AtomicInteger();
+
+    assertThatThrownBy(() -> call(calls, HttpStatus.BAD_GATEWAY))
+        .isInstanceOf(ResponseStatusException.class);
+
+    assertThat(calls.get()).isEqualTo(3);
+    assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isEqualTo(3);
+  }
+
+  private void call(AtomicInteger calls, HttpStatus status) {
+    Retry.decorateRunnable(
+            retry,
+            CircuitBreaker.decorateRunnable(
+                circuitBreaker,
+                () -> {
+                  calls.incrementAndGet();
+                  throw new ResponseStatusException(status);
+                }))
+        .run();
+  }
+}
@@ -0,0 +1,83 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class WatchlistCacheTest {
+  @Mock private StockRepository stockRepository;
+
+  private final AtomicLong ticker = new AtomicLong();
+  private final String userId = "myUserId";
+  private MeterRegistry meterRegistry;
+  private WatchlistCache watchlistCache;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    watchlistCache =
+        new WatchlistCache(stockRepository, meterRegistry, 10, Duration.ofMinutes(5), ticker::get);
+  }
+
+  @Test
+  public void shouldReadFromTableOnlyOnce() {
+    when(stockRepository.findById(userId))
+        .thenReturn(Optional.of(new StockWatchlistEntity(userId, Set.of("AAPL"))));
+
+    assertThat(watchlistCache.get(userId)).isEqualTo(Set.of("AAPL"));
+    assertThat(watchlistCache.get(userId)).isEqualTo(Set.of("AAPL"));
+
+    verify(stockRepository, times(1)).findById(userId);
+    assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void shouldCacheMissingWatchlistAsEmpty() {
+    when(stockRepository.findById(userId)).thenReturn(Optional.empty());
+
+    assertThat(watchlistCache.get(userId)).isEmpty();
+    assertThat(watchlistCache.get(userId)).isEmpty();
+
+    verify(stockRepository, times(1)).findById(userId);
+  }
+
+  @Test
+  public void shouldUpdateCachedWatchlistInPlace() {
+    when(stockRepository.findById(userId))
+        .thenReturn(Optional.of(new StockWatchlistEntity(userId, Set.of("AAPL"))));
+    watchlistCache.get(userId);
+
+    watchlistCache.added(userId, "MSFT");
+    watchlistCache.removed(userId, "AAPL");
+
+    assertThat(watchlistCache.get(userId)).isEqualTo(Set.of("MSFT"));
+    verify(stockRepository, times(1)).findById(userId);
+  }
+
+  @Test
+  public void shouldReadFromTableAgainAfterTtl() {
+    when(stockRepository.findById(userId))
+        .thenReturn(Optional.of(new StockWatchlistEntity(userId, Set.of("AAPL"))));
+
+    watchlistCache.get(userId);
+    ticker.addAndGet(Duration.ofMinutes(5).toNanos());
+    watchlistCache.get(userId);
+
+    verify(stockRepository, times(2)).findById(userId);
+  }
+}
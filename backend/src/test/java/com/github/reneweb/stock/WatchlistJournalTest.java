@@ -0,0 +1,59 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WatchlistJournalTest {
+  @TempDir Path directory;
+
+  @Test
+  public void shouldKeepEntriesOfIncompleteFlush() throws IOException {
+    WatchlistJournal journal = new WatchlistJournal(directory.resolve("journal.log"));
+    journal.sync(journal.append(List.of(new WatchlistJournal.Entry("user1", "AAPL", true))));
+    journal.startFlush();
+    journal.sync(journal.append(List.of(new WatchlistJournal.Entry("user2", "MSFT", false))));
+    journal.startFlush();
+    journal.append(List.of(new WatchlistJournal.Entry("user3", "IBM", true)));
+    journal.close();
+
+    assertThat(entries(new WatchlistJournal(directory.resolve("journal.log"))))
+        .containsExactly("A\tuser1\tAAPL", "R\tuser2\tMSFT", "A\tuser3\tIBM");
+  }
+
+  @Test
+  public void shouldDropFlushedEntries() throws IOException {
+    WatchlistJournal journal = new WatchlistJournal(directory.resolve("journal.log"));
+    journal.sync(journal.append(List.of(new WatchlistJournal.Entry("user1", "AAPL", true))));
+    journal.startFlush();
+    journal.completeFlush();
+    journal.close();
+
+    assertThat(entries(new WatchlistJournal(directory.resolve("journal.log")))).isEmpty();
+  }
+
+  @Test
+  public void shouldSyncOnlyOncePerSequence() throws IOException {
+    WatchlistJournal journal = new WatchlistJournal(directory.resolve("journal.log"));
+    long first = journal.append(List.of(new WatchlistJournal.Entry("user1", "AAPL", true)));
+    long second = journal.append(List.of(new WatchlistJournal.Entry("user2", "AAPL", true)));
+
+    journal.sync(second);
+    journal.sync(first);
+    journal.close();
+
+    assertThat(second).isGreaterThan(first);
+    assertThat(entries(new WatchlistJournal(directory.resolve("journal.log")))).hasSize(2);
+  }
+
+  private static List<String> entries(WatchlistJournal journal) throws IOException {
+    try (journal) {
+      return journal.replay().stream().map(Object::toString).collect(Collectors.toList());
+    }
+  }
+}
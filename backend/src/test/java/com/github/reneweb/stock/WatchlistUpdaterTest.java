@@ -0,0 +1,126 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class WatchlistUpdaterTest {
+  @Mock private AmazonDynamoDB amazonDynamoDB;
+  @Mock private SymbolWatchers symbolWatchers;
+
+  private final String userId = "myUserId";
+  private final String symbol = "myStock";
+  private WatchlistUpdater watchlistUpdater;
+
+  @BeforeEach
+  public void setup() {
+    watchlistUpdater =
+        new WatchlistUpdater(amazonDynamoDB, symbolWatchers, new SimpleMeterRegistry());
+  }
+
+  @Test
+  public void shouldAddSymbolWithSingleUpdate() {
+
+    watchlistUpdater.addSymbol(userId, symbol);
+
+    ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(amazonDynamoDB).updateItem(captor.capture());
+    assertThat(captor.getValue().getKey()).isEqualTo(Map.of("userId", new AttributeValue(userId)));
+    assertThat(captor.getValue().getUpdateExpression()).isEqualTo("ADD symbols :symbols");
+    assertThat(captor.getValue().getExpressionAttributeValues().get(":symbols").getSS())
+        .isEqualTo(List.of(symbol));
+    verify(symbolWatchers).added(userId, symbol);
+  }
+
+  @Test
+  public void shouldNotCountWatcherTwiceForSymbolAlreadyInWatchlist() {
+    when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class)))
+        .thenThrow(new ConditionalCheckFailedException("conditional check failed"));
+
+    watchlistUpdater.addSymbol(userId, symbol);
+
+    verifyNoInteractions(symbolWatchers);
+  }
+
+  @Test
+  public void shouldKeepWatchlistIfNotEmptyAfterRemoval() {
+    when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class)))
+        .thenReturn(withSymbols("anotherSymbol"));
+
+    watchlistUpdater.removeSymbol(userId, symbol);
+
+    ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(amazonDynamoDB).updateItem(captor.capture());
+    assertThat(captor.getValue().getUpdateExpression()).isEqualTo("DELETE symbols :symbols");
+    assertThat(captor.getValue().getConditionExpression()).isEqualTo("contains(symbols, :symbol)");
+    assertThat(captor.getValue().getReturnValues()).isEqualTo(ReturnValue.ALL_NEW.toString());
+    verify(amazonDynamoDB, never()).deleteItem(any(DeleteItemRequest.class));
+    verify(symbolWatchers).removed(userId, symbol);
+  }
+
+  @Test
+  public void shouldDeleteWatchlistIfEmptyAfterRemoval() {
+    when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class)))
+        .thenReturn(
+            new UpdateItemResult().withAttributes(Map.of("userId", new AttributeValue(userId))));
+
+    watchlistUpdater.removeSymbol(userId, symbol);
+
+    ArgumentCaptor<DeleteItemRequest> captor = ArgumentCaptor.forClass(DeleteItemRequest.class);
+    verify(amazonDynamoDB).deleteItem(captor.capture());
+    assertThat(captor.getValue().getConditionExpression())
+        .isEqualTo("attribute_not_exists(symbols)");
+  }
+
+  @Test
+  public void shouldIgnoreConcurrentAddWhenDeletingEmptyWatchlist() {
+    when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class)))
+        .thenReturn(
+            new UpdateItemResult().withAttributes(Map.of("userId", new AttributeValue(userId))));
+    when(amazonDynamoDB.deleteItem(any(DeleteItemRequest.class)))
+        .thenThrow(new ConditionalCheckFailedException("conditional check failed"));
+
+    watchlistUpdater.removeSymbol(userId, symbol);
+  }
+
+  @Test
+  public void shouldIgnoreRemovalOfSymbolNotInWatchlist() {
+    when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class)))
+        .thenThrow(new ConditionalCheckFailedException("conditional check failed"));
+
+    watchlistUpdater.removeSymbol(userId, symbol);
+    verify(amazonDynamoDB, never()).deleteItem(any(DeleteItemRequest.class));
+    verifyNoInteractions(symbolWatchers);
+  }
+
+  private UpdateItemResult withSymbols(String... symbols) {
+    return new UpdateItemResult()
+        .withAttributes(
+            Map.of(
+                "userId",
+                new AttributeValue(userId),
+                "symbols",
+                new AttributeValue().withSS(symbols)));
+  }
+}
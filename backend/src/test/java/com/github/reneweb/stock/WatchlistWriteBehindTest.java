@@ -0,0 +1,211 @@
+package com.github.reneweb.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+@ExtendWith(MockitoExtension.class)
+class WatchlistWriteBehindTest {
+  @Mock private AmazonDynamoDB amazonDynamoDB;
+  @Mock private SymbolWatchers symbolWatchers;
+
+  @TempDir Path directory;
+
+  private final Map<String, Set<String>> table = new HashMap<>();
+
+  @Test
+  public void shouldCoalesceChangesIntoOneUpdatePerUser() {
+    WatchlistWriteBehind writeBehind = writeBehind(10);
+    mockTable(Map.of("user1", Set.of("AAPL"), "user3", Set.of("IBM")));
+
+    writeBehind.addSymbol("user1", "MSFT");
+    writeBehind.removeSymbol("user1", "AAPL");
+    writeBehind.addSymbol("user2", "IBM");
+    writeBehind.removeSymbol("user2", "IBM");
+    writeBehind.addSymbol("user3", "MSFT");
+    writeBehind.addSymbol("user3", "IBM");
+    writeBehind.flush();
+
+    verify(amazonDynamoDB, times(4)).updateItem(any(UpdateItemRequest.class));
+    assertThat(table).isEqualTo(Map.of("user1", Set.of("MSFT"), "user3", Set.of("IBM", "MSFT")));
+    assertThat(recordedWatchers())
+        .containsExactlyInAnyOrder("A\tuser1\tMSFT", "R\tuser1\tAAPL", "A\tuser3\tMSFT");
+  }
+
+  @Test
+  public void shouldDeleteWatchlistOnceEmpty() {
+    WatchlistWriteBehind writeBehind = writeBehind(10);
+    mockTable(Map.of("user1", Set.of("AAPL", "MSFT")));
+
+    writeBehind.removeSymbol("user1", "AAPL");
+    writeBehind.removeSymbol("user1", "MSFT");
+    writeBehind.flush();
+
+    ArgumentCaptor<DeleteItemRequest> captor = ArgumentCaptor.forClass(DeleteItemRequest.class);
+    verify(amazonDynamoDB).deleteItem(captor.capture());
+    assertThat(captor.getValue().getKey()).isEqualTo(Map.of("userId", new AttributeValue("user1")));
+    assertThat(captor.getValue().getConditionExpression())
+        .isEqualTo("attribute_not_exists(symbols)");
+  }
+
+  @Test
+  public void shouldIgnoreRemovalFromMissingWatchlist() {
+    WatchlistWriteBehind writeBehind = writeBehind(10);
+    when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class)))
+        .thenThrow(new ConditionalCheckFailedException("conditional check failed"));
+
+    writeBehind.removeSymbol("user1", "AAPL");
+    writeBehind.flush();
+
+    assertThat(writeBehind.withPendingChanges("user1", Set.of("AAPL"))).isEqualTo(Set.of("AAPL"));
+    assertThat(recordedWatchers()).isEmpty();
+  }
+
+  @Test
+  public void shouldRetryFailedUpdates() {
+    WatchlistWriteBehind writeBehind = writeBehind(10);
+    when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class)))
+        .thenThrow(new RuntimeException("throttled"))
+        .thenReturn(new UpdateItemResult());
+
+    writeBehind.addSymbol("user1", "AAPL");
+    writeBehind.flush();
+
+    verify(amazonDynamoDB, times(2)).updateItem(any(UpdateItemRequest.class));
+    assertThat(writeBehind.withPendingChanges("user1", Set.of())).isEmpty();
+    assertThat(recordedWatchers()).containsExactly("A\tuser1\tAAPL");
+  }
+
+  @Test
+  public void shouldKeepChangesThatCouldNotBeWritten() {
+    WatchlistWriteBehind writeBehind = writeBehind(10);
+    when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class)))
+        .thenThrow(new RuntimeException("unavailable"));
+
+    writeBehind.addSymbol("user1", "AAPL");
+    writeBehind.flush();
+
+    assertThat(writeBehind.withPendingChanges("user1", Set.of())).isEqualTo(Set.of("AAPL"));
+    assertThat(recordedWatchers()).isEmpty();
+  }
+
+  @Test
+  public void shouldRejectChangesIfBufferIsFull() {
+    WatchlistWriteBehind writeBehind = writeBehind(1);
+    writeBehind.addSymbol("user1", "AAPL");
+    writeBehind.addSymbol("user1", "MSFT");
+
+    assertThatThrownBy(() -> writeBehind.addSymbol("user2", "AAPL"))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasFieldOrPropertyWithValue("status", HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
+  @Test
+  public void shouldApplyPendingChangesToReads() {
+    WatchlistWriteBehind writeBehind = writeBehind(10);
+    writeBehind.addSymbol("user1", "MSFT");
+    writeBehind.removeSymbol("user1", "AAPL");
+
+    assertThat(writeBehind.withPendingChanges("user1", Set.of("AAPL", "IBM")))
+        .isEqualTo(Set.of("MSFT", "IBM"));
+    assertThat(writeBehind.withPendingChanges("user2", Set.of("AAPL"))).isEqualTo(Set.of("AAPL"));
+    verifyNoInteractions(amazonDynamoDB);
+  }
+
+  @Test
+  public void shouldReplayJournalAfterRestart() {
+    writeBehind(10).addSymbol("user1", "AAPL");
+
+    WatchlistWriteBehind restarted = writeBehind(10);
+
+    assertThat(restarted.withPendingChanges("user1", Set.of())).isEqualTo(Set.of("AAPL"));
+  }
+
+  @Test
+  public void shouldNotReplaySymbolsAsSeparateEntries() {
+    String forged = "X\nA\tuser2\tEVIL\r\n\\";
+    writeBehind(10).removeSymbol("user1", forged);
+
+    WatchlistWriteBehind restarted = writeBehind(10);
+
+    assertThat(restarted.withPendingChanges("user1", Set.of(forged, "AAPL")))
+        .isEqualTo(Set.of("AAPL"));
+    assertThat(restarted.withPendingChanges("user2", Set.of())).isEmpty();
+  }
+
+  private WatchlistWriteBehind writeBehind(int maxPendingUsers) {
+    return new WatchlistWriteBehind(
+        amazonDynamoDB,
+        symbolWatchers,
+        new SimpleMeterRegistry(),
+        directory.resolve("journal.log").toString(),
+        maxPendingUsers,
+        2,
+        0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<String> recordedWatchers() {
+    ArgumentCaptor<List<WatchlistJournal.Entry>> captor = ArgumentCaptor.forClass(List.class);
+    verify(symbolWatchers).record(captor.capture());
+    return captor.getValue().stream().map(Object::toString).collect(Collectors.toList());
+  }
+
+  /** Applies the updates to the table and answers with the symbols before the update. */
+  private void mockTable(Map<String, Set<String>> watchlists) {
+    watchlists.forEach((userId, symbols) -> table.put(userId, new HashSet<>(symbols)));
+    when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              UpdateItemRequest request = invocation.getArgument(0);
+              String userId = request.getKey().get("userId").getS();
+              Set<String> before = table.getOrDefault(userId, Set.of());
+              Set<String> after = new HashSet<>(before);
+              Set<String> symbols =
+                  new HashSet<>(request.getExpressionAttributeValues().get(":symbols").getSS());
+              if (request.getUpdateExpression().startsWith("ADD")) {
+                after.addAll(symbols);
+              } else if (before.isEmpty()) {
+                throw new ConditionalCheckFailedException("conditional check failed");
+              } else {
+                after.removeAll(symbols);
+              }
+              if (after.isEmpty()) {
+                table.remove(userId);
+              } else {
+                table.put(userId, after);
+              }
+              return before.isEmpty()
+                  ? new UpdateItemResult()
+                  : new UpdateItemResult()
+                      .withAttributes(Map.of("symbols", new AttributeValue().withSS(before)));
+            });
+  }
+}